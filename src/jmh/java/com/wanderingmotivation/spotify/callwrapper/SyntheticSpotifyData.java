@@ -0,0 +1,96 @@
+package com.wanderingmotivation.spotify.callwrapper;
+
+import com.wrapper.spotify.enums.AlbumType;
+import com.wrapper.spotify.enums.Modality;
+import com.wrapper.spotify.enums.ReleaseDatePrecision;
+import com.wrapper.spotify.model_objects.specification.Album;
+import com.wrapper.spotify.model_objects.specification.AlbumSimplified;
+import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
+import com.wrapper.spotify.model_objects.specification.AudioFeatures;
+import com.wrapper.spotify.model_objects.specification.Image;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import com.wrapper.spotify.model_objects.specification.Track;
+import com.wrapper.spotify.model_objects.specification.TrackSimplified;
+
+import java.util.Arrays;
+
+/**
+ * Builds spotify-web-api-java model objects filled in the way Spotify's responses are, for benchmarks
+ * Everything is derived from the ids, so the same id always gives an equal object
+ */
+public final class SyntheticSpotifyData {
+    private SyntheticSpotifyData() {
+    }
+
+    public static Track track(final String trackId, final String albumId, final String artistId, final int number) {
+        return new Track.Builder()
+                .setId(trackId)
+                .setName("track " + trackId)
+                .setArtists(artist(artistId), artist("featured " + number % 7))
+                .setAlbum(new AlbumSimplified.Builder().setId(albumId).build())
+                .setPopularity(number % 100)
+                .setTrackNumber(number)
+                .setDurationMs(180000 + number)
+                .build();
+    }
+
+    public static TrackSimplified simplifiedTrack(final String trackId, final String artistId) {
+        return new TrackSimplified.Builder()
+                .setId(trackId)
+                .setName("track " + trackId)
+                .setArtists(artist(artistId))
+                .build();
+    }
+
+    /**
+     * @param tracks every track on the album, only the first page of them is embedded like Spotify does
+     */
+    public static Album album(final String albumId,
+                              final String artistId,
+                              final TrackSimplified[] tracks,
+                              final int embeddedPageSize) {
+        return new Album.Builder()
+                .setId(albumId)
+                .setName("album " + albumId)
+                .setAlbumType(AlbumType.ALBUM)
+                .setArtists(artist(artistId))
+                .setGenres("genre")
+                .setImages(new Image.Builder().setUrl("https://i.scdn.co/image/" + albumId).build())
+                .setPopularity(albumId.hashCode() & 63)
+                .setReleaseDate("2018-01-01")
+                .setReleaseDatePrecision(ReleaseDatePrecision.DAY)
+                .setTracks(page(Arrays.copyOf(tracks, Math.min(tracks.length, embeddedPageSize)), tracks.length))
+                .build();
+    }
+
+    public static AudioFeatures audioFeatures(final String trackId) {
+        final int seed = trackId.hashCode() & 0xffff;
+        return new AudioFeatures.Builder()
+                .setId(trackId)
+                .setDanceability(seed % 100 / 100f)
+                .setEnergy(seed % 97 / 97f)
+                .setKey(seed % 12)
+                .setLoudness(-(seed % 30))
+                .setMode(seed % 2 == 0 ? Modality.MAJOR : Modality.MINOR)
+                .setSpeechiness(seed % 89 / 89f)
+                .setAcousticness(seed % 83 / 83f)
+                .setInstrumentalness(seed % 79 / 79f)
+                .setLiveness(seed % 73 / 73f)
+                .setValence(seed % 71 / 71f)
+                .setTempo(60f + seed % 140)
+                .setDurationMs(180000 + seed)
+                .setTimeSignature(4)
+                .build();
+    }
+
+    public static <T> Paging<T> page(final T[] items, final int total) {
+        return new Paging.Builder<T>()
+                .setItems(items)
+                .setTotal(total)
+                .build();
+    }
+
+    private static ArtistSimplified artist(final String artistId) {
+        return new ArtistSimplified.Builder().setId(artistId).build();
+    }
+}
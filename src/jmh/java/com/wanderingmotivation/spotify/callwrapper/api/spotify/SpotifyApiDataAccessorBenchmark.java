@@ -0,0 +1,96 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.cache.AudioFeaturesStore;
+import com.wanderingmotivation.spotify.callwrapper.cache.SpotifyEntityCache;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackBatch;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackFields;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedTrack;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data access orchestration against a stub Spotify with synthetic latency and every cache turned off, so each
+ * invocation does the full crawl
+ * With latencyMillis at 0 this measures the accessor's own overhead, with latency it shows how well calls overlap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpotifyApiDataAccessorBenchmark {
+    @Param({"0", "20"})
+    public long latencyMillis;
+
+    @Param({"40"})
+    public int albumCount;
+
+    @Param({"12"})
+    public int tracksPerAlbum;
+
+    @Param({"8"})
+    public int workers;
+
+    private StubSpotifyApiWrapper spotifyApiWrapper;
+    private SpotifyCallExecutor callExecutor;
+    private SpotifyTrackBatcher trackBatcher;
+    private SpotifyApiDataAccessor spotifyApiDataAccessor;
+    private List<String> trackIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        spotifyApiWrapper = new StubSpotifyApiWrapper(albumCount, tracksPerAlbum, latencyMillis);
+        callExecutor = new SpotifyCallExecutor(workers);
+        trackBatcher = new SpotifyTrackBatcher(spotifyApiWrapper, 0, workers);
+        spotifyApiDataAccessor = new SpotifyApiDataAccessor(spotifyApiWrapper,
+                callExecutor,
+                trackBatcher,
+                new SpotifyEntityCache(0, 0, 0, 0, 0, 0, 0, 0, 0),
+                new SpotifySearchCache(0, 0, 0),
+                new AudioFeaturesStore("", 1000),
+                4,
+                4);
+        trackIds = spotifyApiWrapper.getTrackIds();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        trackBatcher.shutdown();
+        callExecutor.shutdown();
+        spotifyApiWrapper.shutdown();
+    }
+
+    /**
+     * Partitioning, chunk merging and the artist filter over every track id, compilation tracks included
+     */
+    @Benchmark
+    public Map<String, WrappedTrack> getManyTracks() throws IOException, SpotifyWebApiException {
+        return spotifyApiDataAccessor.getManyTracks(trackIds, StubSpotifyApiWrapper.ARTIST_ID);
+    }
+
+    /**
+     * Album listing, album hydration, album track paging and track hydration
+     */
+    @Benchmark
+    public TrackBatch getArtistTracks() throws IOException, SpotifyWebApiException {
+        return spotifyApiDataAccessor.getArtistTracks(StubSpotifyApiWrapper.ARTIST_ID, TrackFields.ALL);
+    }
+}
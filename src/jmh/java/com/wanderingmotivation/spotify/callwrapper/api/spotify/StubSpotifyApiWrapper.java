@@ -0,0 +1,127 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.SyntheticSpotifyData;
+import com.wrapper.spotify.model_objects.specification.Album;
+import com.wrapper.spotify.model_objects.specification.AlbumSimplified;
+import com.wrapper.spotify.model_objects.specification.AudioFeatures;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import com.wrapper.spotify.model_objects.specification.Track;
+import com.wrapper.spotify.model_objects.specification.TrackSimplified;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpotifyApiWrapper answering from a synthetic discography after a fixed delay per call, instead of going to Spotify
+ * Every fourth album is a compilation where only the first track is by the artist, like the appears on albums
+ * Spotify lists for featured artists.
+ */
+class StubSpotifyApiWrapper extends SpotifyApiWrapper {
+    static final String ARTIST_ID = "stub-artist";
+    private static final String OTHER_ARTIST_ID = "someone-else";
+    private static final URI UNUSED_URI = URI.create("http://localhost");
+
+    private final long latencyMillis;
+    private final List<String> albumIds = new ArrayList<>();
+    private final List<String> trackIds = new ArrayList<>();
+    private final Map<String, TrackSimplified[]> albumTracks = new HashMap<>();
+    private final Map<String, Album> albums = new HashMap<>();
+    private final Map<String, Track> tracks = new HashMap<>();
+    private final Map<String, AudioFeatures> audioFeatures = new HashMap<>();
+
+    StubSpotifyApiWrapper(final int albumCount, final int tracksPerAlbum, final long latencyMillis) {
+        super("stub", "stub", UNUSED_URI, UNUSED_URI, 0,
+                new SpotifyRequestScheduler(1, 1, 1, 1, 0),
+                new PooledHttpManager(1, 1, 1, 1, 1, 1),
+                new SpotifyCallMetrics(new SimpleMeterRegistry()));
+        this.latencyMillis = latencyMillis;
+
+        for (int a = 0; a < albumCount; a++) {
+            final String albumId = "album-" + a;
+            final boolean compilation = a % 4 == 3;
+            final TrackSimplified[] simplifiedTracks = new TrackSimplified[tracksPerAlbum];
+            for (int t = 0; t < tracksPerAlbum; t++) {
+                final String trackId = albumId + "-track-" + t;
+                final String trackArtistId = compilation && t > 0 ? OTHER_ARTIST_ID : ARTIST_ID;
+                simplifiedTracks[t] = SyntheticSpotifyData.simplifiedTrack(trackId, trackArtistId);
+                tracks.put(trackId, SyntheticSpotifyData.track(trackId, albumId, trackArtistId, t));
+                audioFeatures.put(trackId, SyntheticSpotifyData.audioFeatures(trackId));
+                trackIds.add(trackId);
+            }
+            albumIds.add(albumId);
+            albumTracks.put(albumId, simplifiedTracks);
+            albums.put(albumId, SyntheticSpotifyData.album(albumId, compilation ? OTHER_ARTIST_ID : ARTIST_ID,
+                    simplifiedTracks, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE));
+        }
+    }
+
+    /**
+     * @return every track id in the discography, including the compilation tracks by other artists
+     */
+    List<String> getTrackIds() {
+        return Collections.unmodifiableList(trackIds);
+    }
+
+    @Override
+    Paging<AlbumSimplified> getSpotifyArtistsAlbums(final String artistId, final int offset) throws IOException {
+        pause();
+        final AlbumSimplified[] page = albumIds.stream()
+                .skip(offset)
+                .limit(SpotifyApiConstants.ARTIST_ALBUM_PAGE_SIZE)
+                .map(id -> new AlbumSimplified.Builder().setId(id).build())
+                .toArray(AlbumSimplified[]::new);
+        return SyntheticSpotifyData.page(page, albumIds.size());
+    }
+
+    @Override
+    Album[] getSpotifyAlbums(final String[] ids) throws IOException {
+        pause();
+        return Arrays.stream(ids)
+                .map(albums::get)
+                .toArray(Album[]::new);
+    }
+
+    @Override
+    Paging<TrackSimplified> getSpotifyAlbumTracks(final String albumId, final int offset) throws IOException {
+        pause();
+        final TrackSimplified[] all = albumTracks.get(albumId);
+        final TrackSimplified[] page = Arrays.copyOfRange(all, Math.min(offset, all.length),
+                Math.min(offset + SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE, all.length));
+        return SyntheticSpotifyData.page(page, all.length);
+    }
+
+    @Override
+    Track[] getSpotifyTracks(final String[] ids) throws IOException {
+        pause();
+        return Arrays.stream(ids)
+                .map(tracks::get)
+                .toArray(Track[]::new);
+    }
+
+    @Override
+    AudioFeatures[] getSpotifyAudioFeatures(final String[] ids) throws IOException {
+        pause();
+        return Arrays.stream(ids)
+                .map(audioFeatures::get)
+                .toArray(AudioFeatures[]::new);
+    }
+
+    private void pause() throws IOException {
+        if (latencyMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted during synthetic latency", e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.wanderingmotivation.spotify.callwrapper.SyntheticSpotifyData;
+import com.wrapper.spotify.model_objects.specification.Album;
+import com.wrapper.spotify.model_objects.specification.AudioFeatures;
+import com.wrapper.spotify.model_objects.specification.Track;
+import com.wrapper.spotify.model_objects.specification.TrackSimplified;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting spotify-web-api-java model objects into the wrapped models, once per track or album
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelConstructionBenchmark {
+    private Track track;
+    private AudioFeatures audioFeatures;
+    private WrappedAudioFeatures wrappedAudioFeatures;
+    private Album album;
+
+    @Setup
+    public void setup() {
+        track = SyntheticSpotifyData.track("track", "album", "artist", 3);
+        audioFeatures = SyntheticSpotifyData.audioFeatures("track");
+        wrappedAudioFeatures = new WrappedAudioFeatures(audioFeatures);
+
+        final TrackSimplified[] albumTracks = new TrackSimplified[12];
+        for (int i = 0; i < albumTracks.length; i++) {
+            albumTracks[i] = SyntheticSpotifyData.simplifiedTrack("track " + i, "artist");
+        }
+        album = SyntheticSpotifyData.album("album", "artist", albumTracks, albumTracks.length);
+    }
+
+    @Benchmark
+    public WrappedTrack wrapTrack() {
+        return new WrappedTrack(track);
+    }
+
+    /**
+     * What a track chunk does per track: wrap it, then apply its audio features
+     */
+    @Benchmark
+    public WrappedTrack wrapTrackWithAudioFeatures() {
+        final WrappedTrack wrappedTrack = new WrappedTrack(track);
+        wrappedAudioFeatures.applyTo(wrappedTrack);
+        return wrappedTrack;
+    }
+
+    @Benchmark
+    public WrappedAudioFeatures wrapAudioFeatures() {
+        return new WrappedAudioFeatures(audioFeatures);
+    }
+
+    @Benchmark
+    public WrappedAlbum wrapAlbum() {
+        return new WrappedAlbum(album);
+    }
+}
@@ -0,0 +1,79 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.wanderingmotivation.spotify.callwrapper.SyntheticSpotifyData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing large track responses, as the map of tracks the endpoints used to return and as a TrackBatch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackSerializationBenchmark {
+    @Param({"1000", "10000"})
+    public int trackCount;
+
+    @Param({"", "name,popularity,tempo"})
+    public String fields;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper cborMapper;
+    private Map<String, WrappedTrack> trackMap;
+    private TrackBatch trackBatch;
+
+    @Setup
+    public void setup() {
+        final TrackFields trackFields = TrackFields.parse(fields);
+        jsonMapper = new ObjectMapper();
+        jsonMapper.setFilterProvider(trackFields.toFilterProvider());
+        cborMapper = new ObjectMapper(new CBORFactory());
+        cborMapper.setFilterProvider(trackFields.toFilterProvider());
+
+        trackMap = new LinkedHashMap<>();
+        final TrackBatch batch = new TrackBatch(trackCount);
+        for (int i = 0; i < trackCount; i++) {
+            final String trackId = "track-" + i;
+            final WrappedTrack track = new WrappedTrack(
+                    SyntheticSpotifyData.track(trackId, "album-" + i / 12, "artist", i % 12));
+            new WrappedAudioFeatures(SyntheticSpotifyData.audioFeatures(trackId)).applyTo(track);
+            trackMap.put(trackId, track);
+            batch.add(track);
+        }
+        trackBatch = batch.withFields(trackFields);
+    }
+
+    @Benchmark
+    public byte[] trackMapToJson() throws JsonProcessingException {
+        return jsonMapper.writeValueAsBytes(trackMap);
+    }
+
+    @Benchmark
+    public byte[] trackBatchToJson() throws JsonProcessingException {
+        return jsonMapper.writeValueAsBytes(trackBatch);
+    }
+
+    @Benchmark
+    public byte[] trackBatchToCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(trackBatch);
+    }
+}
@@ -0,0 +1,48 @@
+package com.wanderingmotivation.spotify.callwrapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Runs the data access work behind every endpoint on its own bounded executor instead of on servlet threads
+ */
+@Configuration
+public class AsyncConfiguration extends WebMvcConfigurerAdapter {
+    static final String SERVICE_EXECUTOR = "spotifyServiceExecutor";
+    private static final long CONTAINER_TIMEOUT_MARGIN_MILLIS = 5000;
+
+    private final ThreadPoolTaskExecutor serviceExecutor;
+    private final long requestTimeoutMillis;
+
+    AsyncConfiguration(@Value("${spotify.service.threads:32}") final int threads,
+                       @Value("${spotify.service.queue-capacity:500}") final int queueCapacity,
+                       @Value("${spotify.service.request-timeout-millis:120000}") final long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        serviceExecutor = new ThreadPoolTaskExecutor();
+        serviceExecutor.setCorePoolSize(threads);
+        serviceExecutor.setMaxPoolSize(threads);
+        serviceExecutor.setQueueCapacity(queueCapacity);
+        serviceExecutor.setThreadNamePrefix("spotify-service-");
+        serviceExecutor.initialize();
+    }
+
+    @Bean(name = SERVICE_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor spotifyServiceExecutor() {
+        return serviceExecutor;
+    }
+
+    /**
+     * Streaming responses are written on the same executor, and every async request gets the configured timeout,
+     * streams included, so the timeout needs to cover the slowest discography crawl
+     * The container's timeout is a little longer so SpotifyService's own timeout gets to cancel the work first
+     */
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(serviceExecutor);
+        configurer.setDefaultTimeout(requestTimeoutMillis + CONTAINER_TIMEOUT_MARGIN_MILLIS);
+    }
+}
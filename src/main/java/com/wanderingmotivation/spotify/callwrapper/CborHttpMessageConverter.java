@@ -0,0 +1,21 @@
+package com.wanderingmotivation.spotify.callwrapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.Assert;
+
+/**
+ * Writes and reads responses as CBOR for clients that ask for application/cbor
+ * Uses the same Jackson setup as the JSON converter, so the structure matches JSON but floats stay binary and
+ * nothing is rendered as text
+ */
+public class CborHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+    public static final MediaType APPLICATION_CBOR = MediaType.parseMediaType("application/cbor");
+
+    public CborHttpMessageConverter(final ObjectMapper objectMapper) {
+        super(objectMapper, APPLICATION_CBOR);
+        Assert.isInstanceOf(CBORFactory.class, objectMapper.getFactory(), "ObjectMapper must be configured for CBOR");
+    }
+}
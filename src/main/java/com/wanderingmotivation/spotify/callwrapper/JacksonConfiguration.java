@@ -0,0 +1,46 @@
+package com.wanderingmotivation.spotify.callwrapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackFields;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.List;
+
+/**
+ * Gives the shared ObjectMapper a default for the WrappedTrack field filter, so tracks serialize with every field
+ * anywhere a response doesn't pick its own TrackFields
+ * Also offers CBOR next to JSON for clients that send Accept: application/cbor
+ */
+@Configuration
+public class JacksonConfiguration extends WebMvcConfigurerAdapter {
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    JacksonConfiguration(final Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    /**
+     * Static since the builder this customizes is also what this configuration is constructed with
+     */
+    @Bean
+    public static Jackson2ObjectMapperBuilderCustomizer trackFieldFilterCustomizer() {
+        return builder -> builder.filters(TrackFields.ALL.toFilterProvider());
+    }
+
+    /**
+     * Added after the default converters so wildcard and missing Accept headers still get JSON
+     */
+    @Override
+    public void extendMessageConverters(final List<HttpMessageConverter<?>> converters) {
+        // configure a fresh mapper rather than changing the factory on the builder the JSON mapper comes from
+        final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        objectMapperBuilder.configure(cborMapper);
+        converters.add(new CborHttpMessageConverter(cborMapper));
+    }
+}
@@ -1,82 +1,176 @@
 package com.wanderingmotivation.spotify.callwrapper;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.wanderingmotivation.spotify.callwrapper.api.spotify.SpotifyApiDataAccessor;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackBatch;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackFields;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackLookup;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackLookupResult;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedAlbum;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedArtist;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedPlaylist;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedTrack;
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import com.wanderingmotivation.spotify.callwrapper.util.InvalidRequestException;
+import com.wanderingmotivation.spotify.callwrapper.util.RequestTimeoutException;
+import com.wanderingmotivation.spotify.callwrapper.util.ThrowingConsumer;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
+/**
+ * Every endpoint is timed end to end, including time spent waiting on the service executor, as
+ * spotify.service.requests tagged by uri, method and status
+ */
 @RestController
-@CrossOrigin
+@CrossOrigin(exposedHeaders = TraceResponseBodyAdvice.SERVER_TIMING)
 @Slf4j
+@Timed(value = "spotify.service.requests", histogram = true)
 public class SpotifyService {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final Pattern SPOTIFY_ID = Pattern.compile("[0-9A-Za-z]{22}");
+    private static final String BUSY_RETRY_AFTER_SECONDS = "1";
+
     private final SpotifyApiDataAccessor spotifyApiDataAccessor;
+    private final ObjectMapper objectMapper;
+
+    private final AsyncTaskExecutor serviceExecutor;
+    private final long requestTimeoutMillis;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final int maxLookupArtists;
+    private final int maxLookupTracks;
 
-    SpotifyService(SpotifyApiDataAccessor spotifyApiDataAccessor) {
+    /**
+     * Every endpoint hands its work to the service executor so servlet threads are freed while Spotify is crawled
+     */
+    SpotifyService(SpotifyApiDataAccessor spotifyApiDataAccessor,
+                   ObjectMapper objectMapper,
+                   @Qualifier(AsyncConfiguration.SERVICE_EXECUTOR) AsyncTaskExecutor serviceExecutor,
+                   @Value("${spotify.service.request-timeout-millis:120000}") long requestTimeoutMillis,
+                   @Value("${spotify.lookup.max-artists:20}") int maxLookupArtists,
+                   @Value("${spotify.lookup.max-tracks:500}") int maxLookupTracks) {
         this.spotifyApiDataAccessor = spotifyApiDataAccessor;
+        this.objectMapper = objectMapper;
+        this.serviceExecutor = serviceExecutor;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "spotify-service-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxLookupArtists = maxLookupArtists;
+        this.maxLookupTracks = maxLookupTracks;
     }
 
     /**
      * Searches for an artist
      * @param search search parameter matching spotify-web-api-java's SearchArtistsRequest
-     * @return list of artists returned
-     * @throws IOException
-     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     * @return list of artists returned, failed with a SpotifyWebApiException when there is some Spotify error
      */
     @GetMapping("/search/artist")
-    public List<WrappedArtist> searchForArtist(@RequestParam final String search)
-            throws IOException, SpotifyWebApiException {
-        return spotifyApiDataAccessor.searchForArtist(search);
+    public CompletableFuture<List<WrappedArtist>> searchForArtist(@RequestParam final String search) {
+        return async(() -> spotifyApiDataAccessor.searchForArtist(search));
     }
 
     /**
      * Searches for an album
      * @param search search parameter matching spotify-web-api-java's SearchAlbumsRequest
-     * @return list of albums returned
-     * @throws IOException
-     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     * @return list of albums returned, failed with a SpotifyWebApiException when there is some Spotify error
      */
     @GetMapping("/search/album")
-    public List<WrappedAlbum> searchForAlbum(@RequestParam final String search)
-            throws IOException, SpotifyWebApiException {
-        return spotifyApiDataAccessor.searchForAlbum(search);
+    public CompletableFuture<List<WrappedAlbum>> searchForAlbum(@RequestParam final String search) {
+        return async(() -> spotifyApiDataAccessor.searchForAlbum(search));
     }
 
     /**
      * Searches for a playlist
      * @param search search parameter matching spotify-web-api-java's SearchPlaylistsRequest
-     * @return list of playlists returned
-     * @throws IOException
-     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     * @return list of playlists returned, failed with a SpotifyWebApiException when there is some Spotify error
      */
     @GetMapping("/search/playlist")
-    public List<WrappedPlaylist> searchForPlaylist(@RequestParam final String search)
-            throws IOException, SpotifyWebApiException {
-        return spotifyApiDataAccessor.searchForPlaylist(search);
+    public CompletableFuture<List<WrappedPlaylist>> searchForPlaylist(@RequestParam final String search) {
+        return async(() -> spotifyApiDataAccessor.searchForPlaylist(search));
     }
 
     /**
      * Get full track information for an artist
      * @param artistId Spotify URI for an artist
-     * @return Map of artist, track, and album information
-     * @throws IOException
-     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     * @param fields optional comma separated track fields to include, leaving out audio features saves those calls
+     * @return Map of artist, track, and album information,
+     * failed with a SpotifyWebApiException when there is some Spotify error
      */
     @GetMapping("/getArtistTracks/{artistId}")
-    public Map<String, WrappedTrack> getArtistTracks(@PathVariable final String artistId)
-            throws SpotifyWebApiException, IOException {
-        return spotifyApiDataAccessor.getArtistTracks(artistId);
+    public CompletableFuture<TrackBatch> getArtistTracks(@PathVariable final String artistId,
+                                                         @RequestParam(required = false) final String fields) {
+        final TrackFields trackFields = TrackFields.parse(fields);
+        return async(() -> spotifyApiDataAccessor.getArtistTracks(artistId, trackFields));
+    }
+
+    /**
+     * Get full track information for many artists and tracks in one request
+     * Cheaper than asking for each artist separately, albums and tracks they share are only fetched once
+     * Every artist means a discography crawl and the track ids share batches with other requests, so oversized
+     * lookups and malformed ids are turned away with a 400 before anything goes out to Spotify
+     * @param lookup artist ids and track ids to look up
+     * @param fields optional comma separated track fields to include, leaving out audio features saves those calls
+     * @return tracks per artist and the requested tracks by id,
+     * failed with a SpotifyWebApiException when there is some Spotify error
+     */
+    @PostMapping("/lookup/tracks")
+    public CompletableFuture<TrackLookupResult> lookupTracks(@RequestBody final TrackLookup lookup,
+                                                             @RequestParam(required = false) final String fields) {
+        validateIds("artist", lookup.getArtistIds(), maxLookupArtists);
+        validateIds("track", lookup.getTrackIds(), maxLookupTracks);
+        final TrackFields trackFields = TrackFields.parse(fields);
+        return async(() -> spotifyApiDataAccessor.lookupTracks(lookup.getArtistIds(), lookup.getTrackIds(),
+                trackFields));
+    }
+
+    private static void validateIds(final String kind, final List<String> ids, final int maxIds) {
+        if (ids == null) {
+            return;
+        }
+        if (ids.size() > maxIds) {
+            throw new InvalidRequestException(String.format("at most %s %s ids can be looked up at once, got %s",
+                    maxIds, kind, ids.size()));
+        }
+        for (final String id : ids) {
+            if (id == null || !SPOTIFY_ID.matcher(id).matches()) {
+                throw new InvalidRequestException(String.format("%s is not a Spotify %s id", id, kind));
+            }
+        }
     }
 
     /**
@@ -84,28 +178,169 @@ public class SpotifyService {
      * Deprecated until associated change made in visualizer
      * @param userId owner's user id
      * @param playlistId Spotify playlist id
-     * @return map of track id to track information
-     * @throws IOException
-     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     * @return map of track id to track information,
+     * failed with a SpotifyWebApiException when there is some Spotify error
      */
     @GetMapping("/getPlaylistTracks/{userId}/{playlistId}")
     @Deprecated
-    public Map<String, WrappedTrack> getPlaylistTracks(@PathVariable final String userId,
-                                                       @PathVariable final String playlistId)
-            throws IOException, SpotifyWebApiException {
-        return spotifyApiDataAccessor.getPlaylistTracks(playlistId);
+    public CompletableFuture<TrackBatch> getPlaylistTracks(@PathVariable final String userId,
+                                                           @PathVariable final String playlistId) {
+        return async(() -> spotifyApiDataAccessor.getPlaylistTracks(playlistId, TrackFields.ALL));
     }
 
     /**
      * Gets all tracks for a playlist
+     * The ETag is derived from the playlist's snapshot id, so an unchanged playlist is answered with a 304 after at
+     * most one lightweight snapshot check
      * @param playlistId Spotify playlist id
-     * @return map of track id to track information
-     * @throws IOException
-     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     * @param fields optional comma separated track fields to include, leaving out audio features saves those calls
+     * @param ifNoneMatch ETags the client already has
+     * @return map of track id to track information,
+     * failed with a SpotifyWebApiException when there is some Spotify error
      */
     @GetMapping("/getPlaylistTracks/{playlistId}")
-    public Map<String, WrappedTrack> getPlaylistTracks(@PathVariable final String playlistId)
-            throws IOException, SpotifyWebApiException {
-        return spotifyApiDataAccessor.getPlaylistTracks(playlistId);
+    public CompletableFuture<ResponseEntity<TrackBatch>> getPlaylistTracks(
+            @PathVariable final String playlistId,
+            @RequestParam(required = false) final String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch) {
+        final TrackFields trackFields = TrackFields.parse(fields);
+        return async(() -> {
+            final String snapshotId = spotifyApiDataAccessor.getPlaylistSnapshotId(playlistId);
+            // weak since JSON and CBOR share it, and fields are part of it since they change the body
+            final String eTag = "W/\"" + snapshotId + ";" + trackFields + "\"";
+            if (matchesETag(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(eTag)
+                    .body(spotifyApiDataAccessor.getPlaylistTracks(playlistId, snapshotId, trackFields));
+        });
+    }
+
+    /**
+     * Streams full track information for an artist as newline delimited JSON, one track per line
+     * Tracks are written and flushed a chunk at a time as they're fetched
+     * @param artistId Spotify URI for an artist
+     * @param fields optional comma separated track fields to include, leaving out audio features saves those calls
+     * @return streamed tracks
+     */
+    @GetMapping(value = "/streamArtistTracks/{artistId}", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamArtistTracks(
+            @PathVariable final String artistId,
+            @RequestParam(required = false) final String fields) {
+        final TrackFields trackFields = TrackFields.parse(fields);
+        return streamTracks(trackFields, chunkConsumer ->
+                spotifyApiDataAccessor.streamArtistTracks(artistId, trackFields, chunkConsumer));
+    }
+
+    /**
+     * Streams all tracks for a playlist as newline delimited JSON, one track per line
+     * Tracks are written and flushed a chunk at a time as they're fetched
+     * @param playlistId Spotify playlist id
+     * @param fields optional comma separated track fields to include, leaving out audio features saves those calls
+     * @return streamed tracks
+     */
+    @GetMapping(value = "/streamPlaylistTracks/{playlistId}", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamPlaylistTracks(
+            @PathVariable final String playlistId,
+            @RequestParam(required = false) final String fields) {
+        final TrackFields trackFields = TrackFields.parse(fields);
+        return streamTracks(trackFields, chunkConsumer ->
+                spotifyApiDataAccessor.streamPlaylistTracks(playlistId, trackFields, chunkConsumer));
+    }
+
+    /**
+     * The response is already committed by the time a Spotify error can happen, so errors just end the stream early
+     */
+    private ResponseEntity<StreamingResponseBody> streamTracks(final TrackFields fields,
+                                                               final TrackStream trackStream) {
+        final ObjectWriter trackWriter = objectMapper.writer(fields.toFilterProvider());
+        final StreamingResponseBody body = outputStream -> {
+            try {
+                trackStream.stream(chunk -> {
+                    for (final WrappedTrack track : chunk) {
+                        outputStream.write(trackWriter.writeValueAsBytes(track));
+                        outputStream.write('\n');
+                    }
+                    outputStream.flush();
+                });
+            } catch (final SpotifyWebApiException e) {
+                log.warn("spotify error while streaming tracks", e);
+                throw new IOException(e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    private static boolean matchesETag(final String ifNoneMatch, final String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        final String opaqueTag = eTag.substring(eTag.indexOf('"'));
+        for (final String candidate : ifNoneMatch.split(",")) {
+            final String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.substring(Math.max(0, trimmed.indexOf('"'))).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The service executor's queue is full, so callers are asked to back off briefly rather than left to time out
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> serviceBusy(final TaskRejectedException e) {
+        log.warn("service executor is saturated, turning a request away");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, BUSY_RETRY_AFTER_SECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    /**
+     * The request's trace is kept as a request attribute so TraceResponseBodyAdvice can report it with the response
+     * Requests still running after the request timeout fail and have their work interrupted, which the Spotify call
+     * paths turn into an IOException, so an abandoned crawl stops instead of holding a service thread
+     */
+    private <T> CompletableFuture<T> async(final SpotifyRequest<T> request) {
+        final RequestTrace trace = new RequestTrace();
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(RequestTrace.ATTRIBUTE, trace, RequestAttributes.SCOPE_REQUEST);
+        final RequestTrace.Context traceContext = trace.context();
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Future<?> task = serviceExecutor.submit(() -> {
+            try (RequestTrace.Scope ignored = RequestTrace.enter(traceContext)) {
+                future.complete(request.get());
+            } catch (final Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        final ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+            if (future.completeExceptionally(new RequestTimeoutException(
+                    "request took longer than " + requestTimeoutMillis + "ms"))) {
+                task.cancel(true);
+            }
+        }, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, t) -> timeout.cancel(false));
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface SpotifyRequest<T> {
+        T get() throws IOException, SpotifyWebApiException;
+    }
+
+    @FunctionalInterface
+    private interface TrackStream {
+        void stream(ThrowingConsumer<List<WrappedTrack>, IOException> chunkConsumer)
+                throws IOException, SpotifyWebApiException;
     }
 }
@@ -0,0 +1,59 @@
+package com.wanderingmotivation.spotify.callwrapper;
+
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the request's trace in a Server-Timing header, one metric per stage with its calls, retries and cache hits
+ * Requests with debug=true get the body wrapped in an envelope along with the same breakdown as JSON
+ */
+@ControllerAdvice(assignableTypes = SpotifyService.class)
+public class TraceResponseBodyAdvice implements ResponseBodyAdvice<Object> {
+    static final String SERVER_TIMING = "Server-Timing";
+    static final String DEBUG_PARAMETER = "debug";
+
+    @Override
+    public boolean supports(final MethodParameter returnType,
+                            final Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(final Object body,
+                                  final MethodParameter returnType,
+                                  final MediaType selectedContentType,
+                                  final Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  final ServerHttpRequest request,
+                                  final ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest)) {
+            return body;
+        }
+        final HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+        final Object trace = servletRequest.getAttribute(RequestTrace.ATTRIBUTE);
+        if (!(trace instanceof RequestTrace)) {
+            return body;
+        }
+
+        final RequestTrace requestTrace = (RequestTrace) trace;
+        response.getHeaders().add(SERVER_TIMING, requestTrace.toServerTiming());
+        // bodiless responses like a 304 stay bodiless
+        if (body == null || !Boolean.parseBoolean(servletRequest.getParameter(DEBUG_PARAMETER))) {
+            return body;
+        }
+        final Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("data", body);
+        envelope.put("trace", requestTrace.toMap());
+        return envelope;
+    }
+}
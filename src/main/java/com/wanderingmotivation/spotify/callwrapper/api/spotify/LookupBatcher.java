@@ -0,0 +1,162 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.BadRequestException;
+import com.wrapper.spotify.exceptions.detailed.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Gathers id lookups from any number of callers into full batches for one of Spotify's "several" endpoints
+ * A batch goes out as soon as it has batchSize distinct ids, otherwise lingerMillis after its first id arrived.
+ * Results are routed back by position, Spotify returns one slot per requested id with null for ids it doesn't know.
+ * A batch's call is traced against the request that queued its first id, even when other requests share the batch.
+ */
+@Slf4j
+class LookupBatcher<T> {
+    @FunctionalInterface
+    interface BatchLookup<T> {
+        T[] lookup(String[] ids) throws IOException, SpotifyWebApiException;
+    }
+
+    private final String name;
+    private final BatchLookup<T> batchLookup;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final ScheduledExecutorService timer;
+    private final Executor dispatcher;
+
+    private Map<String, List<CompletableFuture<T>>> pending = new LinkedHashMap<>();
+    private RequestTrace.Context pendingTraceContext;
+    private ScheduledFuture<?> scheduledFlush;
+
+    LookupBatcher(final String name,
+                  final BatchLookup<T> batchLookup,
+                  final int batchSize,
+                  final long lingerMillis,
+                  final ScheduledExecutorService timer,
+                  final Executor dispatcher) {
+        this.name = name;
+        this.batchLookup = batchLookup;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.timer = timer;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Queues ids for lookup
+     * @param ids ids to look up
+     * @return future of the results in the same order as the ids, with null for ids Spotify doesn't know
+     */
+    CompletableFuture<List<T>> lookup(final List<String> ids) {
+        final List<CompletableFuture<T>> results = new ArrayList<>(ids.size());
+        final List<Map<String, List<CompletableFuture<T>>>> fullBatches = new ArrayList<>();
+        final List<RequestTrace.Context> fullBatchTraceContexts = new ArrayList<>();
+
+        synchronized (this) {
+            for (final String id : ids) {
+                if (pending.isEmpty()) {
+                    pendingTraceContext = RequestTrace.capture();
+                }
+                final CompletableFuture<T> result = new CompletableFuture<>();
+                pending.computeIfAbsent(id, k -> new ArrayList<>()).add(result);
+                results.add(result);
+                if (pending.size() >= batchSize) {
+                    fullBatchTraceContexts.add(pendingTraceContext);
+                    fullBatches.add(takePending());
+                }
+            }
+            if (!pending.isEmpty() && scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        for (int i = 0; i < fullBatches.size(); i++) {
+            dispatch(fullBatches.get(i), fullBatchTraceContexts.get(i));
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[] {}))
+                .thenApply(v -> results.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList()));
+    }
+
+    private void flush() {
+        final Map<String, List<CompletableFuture<T>>> batch;
+        final RequestTrace.Context traceContext;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            traceContext = pendingTraceContext;
+            batch = takePending();
+        }
+        dispatch(batch, traceContext);
+    }
+
+    private Map<String, List<CompletableFuture<T>>> takePending() {
+        final Map<String, List<CompletableFuture<T>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        pendingTraceContext = null;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(final Map<String, List<CompletableFuture<T>>> batch,
+                          final RequestTrace.Context traceContext) {
+        dispatcher.execute(() -> {
+            try (RequestTrace.Scope ignored = RequestTrace.enter(traceContext)) {
+                lookup(batch, batch.keySet().toArray(new String[] {}));
+            }
+        });
+    }
+
+    /**
+     * Looks up ids from a batch and completes their waiters
+     * When Spotify rejects the whole call, e.g. over one malformed id, the ids are split in halves and looked up
+     * again, so only the waiters on the bad id fail and not every unrelated caller that happened to share the batch
+     */
+    private void lookup(final Map<String, List<CompletableFuture<T>>> batch, final String[] ids) {
+        log.debug(String.format("looking up a batch of %s %s", ids.length, name));
+        try {
+            final T[] found = batchLookup.lookup(ids);
+            for (int i = 0; i < ids.length; i++) {
+                final T result = found != null && i < found.length ? found[i] : null;
+                batch.get(ids[i]).forEach(f -> f.complete(result));
+            }
+        } catch (final Throwable t) {
+            if (ids.length > 1 && isRejected(t)) {
+                log.debug(String.format("batch of %s %s rejected, splitting it to find the bad ids", ids.length, name));
+                final int half = ids.length / 2;
+                lookup(batch, Arrays.copyOfRange(ids, 0, half));
+                lookup(batch, Arrays.copyOfRange(ids, half, ids.length));
+                return;
+            }
+            for (final String id : ids) {
+                batch.get(id).forEach(f -> f.completeExceptionally(t));
+            }
+        }
+    }
+
+    private static boolean isRejected(final Throwable t) {
+        return SpotifyErrors.find(t, BadRequestException.class) != null ||
+                SpotifyErrors.find(t, NotFoundException.class) != null;
+    }
+}
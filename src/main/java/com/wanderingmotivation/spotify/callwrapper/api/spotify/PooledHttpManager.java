@@ -0,0 +1,240 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.BadGatewayException;
+import com.wrapper.spotify.exceptions.detailed.BadRequestException;
+import com.wrapper.spotify.exceptions.detailed.ForbiddenException;
+import com.wrapper.spotify.exceptions.detailed.InternalServerErrorException;
+import com.wrapper.spotify.exceptions.detailed.NotFoundException;
+import com.wrapper.spotify.exceptions.detailed.ServiceUnavailableException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import com.wrapper.spotify.exceptions.detailed.UnauthorizedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP transport for spotify-web-api-java backed by one shared, keep-alive connection pool
+ * Replaces the library's default client so pool size, per-route limits and timeouts are configurable and the pool
+ * can be watched. Responses are mapped to the same exceptions the library's own manager throws.
+ */
+@Component
+@Slf4j
+class PooledHttpManager implements IHttpManager, MeterBinder {
+    private static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    PooledHttpManager(@Value("${spotify.http.max-connections:64}") final int maxConnections,
+                      @Value("${spotify.http.max-connections-per-route:32}") final int maxConnectionsPerRoute,
+                      @Value("${spotify.http.connect-timeout-millis:2000}") final int connectTimeoutMillis,
+                      @Value("${spotify.http.read-timeout-millis:10000}") final int readTimeoutMillis,
+                      @Value("${spotify.http.pool-timeout-millis:5000}") final int poolTimeoutMillis,
+                      @Value("${spotify.http.keep-alive-millis:60000}") final long keepAliveMillis) {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        // cheap staleness check for connections that sat idle, instead of one on every lease
+        connectionManager.setValidateAfterInactivity(2000);
+
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setCookieSpec(CookieSpecs.STANDARD)
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .setConnectionRequestTimeout(poolTimeoutMillis)
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // keep connections as long as the server allows, or keepAliveMillis when it doesn't say
+                .setKeepAliveStrategy((response, context) -> {
+                    final long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                            .getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? serverKeepAlive : keepAliveMillis;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    public String get(final URI uri, final Header[] headers) throws IOException, SpotifyWebApiException {
+        return execute(new HttpGet(uri), headers);
+    }
+
+    @Override
+    public String post(final URI uri, final Header[] headers, final HttpEntity body)
+            throws IOException, SpotifyWebApiException {
+        final HttpPost httpPost = new HttpPost(uri);
+        httpPost.setEntity(body);
+        return execute(httpPost, headers);
+    }
+
+    @Override
+    public String put(final URI uri, final Header[] headers, final HttpEntity body)
+            throws IOException, SpotifyWebApiException {
+        final HttpPut httpPut = new HttpPut(uri);
+        httpPut.setEntity(body);
+        return execute(httpPut, headers);
+    }
+
+    @Override
+    public String delete(final URI uri, final Header[] headers, final HttpEntity body)
+            throws IOException, SpotifyWebApiException {
+        final HttpEntityEnclosingRequestBase httpDelete = new HttpEntityEnclosingRequestBase() {
+            @Override
+            public String getMethod() {
+                return "DELETE";
+            }
+        };
+        httpDelete.setURI(uri);
+        httpDelete.setEntity(body);
+        return execute(httpDelete, headers);
+    }
+
+    /**
+     * @return snapshot of the connection pool's leased, available, pending and max connections
+     */
+    PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("spotify.http.pool.leased", connectionManager, c -> c.getTotalStats().getLeased())
+                .description("connections currently handed out for requests")
+                .register(registry);
+        Gauge.builder("spotify.http.pool.available", connectionManager, c -> c.getTotalStats().getAvailable())
+                .description("idle connections kept alive for reuse")
+                .register(registry);
+        Gauge.builder("spotify.http.pool.pending", connectionManager, c -> c.getTotalStats().getPending())
+                .description("requests waiting for a connection")
+                .register(registry);
+        Gauge.builder("spotify.http.pool.max", connectionManager, c -> c.getTotalStats().getMax())
+                .description("maximum connections in the pool")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        httpClient.close();
+    }
+
+    private String execute(final HttpRequestBase request, final Header[] headers)
+            throws IOException, SpotifyWebApiException {
+        if (headers != null) {
+            request.setHeaders(headers);
+        }
+        // reading the whole body hands the connection back to the pool for reuse
+        try (final CloseableHttpResponse response = httpClient.execute(request)) {
+            final String responseBody = response.getEntity() != null ?
+                    EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) :
+                    null;
+            final int statusCode = response.getStatusLine().getStatusCode();
+            final String errorMessage = getErrorMessage(responseBody, response.getStatusLine().getReasonPhrase());
+
+            switch (statusCode) {
+                case HttpStatus.SC_BAD_REQUEST:
+                    throw new BadRequestException(errorMessage);
+                case HttpStatus.SC_UNAUTHORIZED:
+                    throw new UnauthorizedException(errorMessage);
+                case HttpStatus.SC_FORBIDDEN:
+                    throw new ForbiddenException(errorMessage);
+                case HttpStatus.SC_NOT_FOUND:
+                    throw new NotFoundException(errorMessage);
+                case 429: {
+                    throw new TooManyRequestsException(errorMessage,
+                            getRetryAfterSeconds(response.getFirstHeader("Retry-After")));
+                }
+                case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                    throw new InternalServerErrorException(errorMessage);
+                case HttpStatus.SC_BAD_GATEWAY:
+                    throw new BadGatewayException(errorMessage);
+                case HttpStatus.SC_SERVICE_UNAVAILABLE:
+                    throw new ServiceUnavailableException(errorMessage);
+                default:
+                    return responseBody;
+            }
+        }
+    }
+
+    /**
+     * Retry-After is either a number of seconds or an HTTP-date, anything unreadable waits the default second
+     */
+    static int getRetryAfterSeconds(final Header retryAfter) {
+        if (retryAfter == null || retryAfter.getValue() == null) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+        final String value = retryAfter.getValue().trim();
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (final NumberFormatException e) {
+            final Date retryAt = DateUtils.parseDate(value);
+            if (retryAt == null) {
+                log.debug("unreadable Retry-After: " + value);
+                return DEFAULT_RETRY_AFTER_SECONDS;
+            }
+            final long millis = retryAt.getTime() - System.currentTimeMillis();
+            return (int) Math.max(0, (millis + 999) / 1000);
+        }
+    }
+
+    /**
+     * Spotify puts error details either in error_description (accounts service) or error.message (web api)
+     */
+    private static String getErrorMessage(final String responseBody, final String reasonPhrase) {
+        if (responseBody == null || responseBody.isEmpty()) {
+            return reasonPhrase;
+        }
+        try {
+            final JsonElement jsonElement = new JsonParser().parse(responseBody);
+            if (jsonElement.isJsonObject() && jsonElement.getAsJsonObject().has("error")) {
+                final JsonObject jsonObject = jsonElement.getAsJsonObject();
+                if (jsonObject.has("error_description")) {
+                    return jsonObject.get("error_description").getAsString();
+                } else if (jsonObject.get("error").isJsonObject()
+                        && jsonObject.getAsJsonObject("error").has("message")) {
+                    return jsonObject.getAsJsonObject("error").get("message").getAsString();
+                }
+            }
+        } catch (final JsonSyntaxException | IllegalStateException e) {
+            // not an error body we understand, fall back to the status line
+        }
+        return reasonPhrase;
+    }
+}
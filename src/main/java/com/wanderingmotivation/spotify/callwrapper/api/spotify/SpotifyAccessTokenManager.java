@@ -0,0 +1,103 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.model_objects.credentials.ClientCredentials;
+import com.wrapper.spotify.requests.authorization.client_credentials.ClientCredentialsRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the client credentials access token on a SpotifyApi fresh
+ * Tokens are refreshed in the background a margin ahead of their expiry, and refreshes are single flight:
+ * concurrent callers that find the same stale token all wait on one client credentials request.
+ */
+@Slf4j
+class SpotifyAccessTokenManager {
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final SpotifyApi spotifyApi;
+    private final ClientCredentialsRequest clientCredentialsRequest;
+    private final long refreshMarginMillis;
+    private final ScheduledExecutorService refresher;
+
+    private volatile String accessToken;
+    private volatile long refreshAtMillis;
+
+    SpotifyAccessTokenManager(final SpotifyApi spotifyApi,
+                              final ClientCredentialsRequest clientCredentialsRequest,
+                              final long refreshMarginMillis) {
+        this.spotifyApi = spotifyApi;
+        this.clientCredentialsRequest = clientCredentialsRequest;
+        this.refreshMarginMillis = refreshMarginMillis;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "spotify-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets a token that isn't due for a refresh, only blocking if there isn't one yet or the background refresh fell
+     * behind
+     * @return the access token now set on the SpotifyApi
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    String getAccessToken() throws IOException, SpotifyWebApiException {
+        final String token = accessToken;
+        if (token != null && System.currentTimeMillis() < refreshAtMillis) {
+            return token;
+        }
+        return refresh(token);
+    }
+
+    /**
+     * Replaces a token, unless another caller already replaced it
+     * @param staleToken the token that was found to be bad, may be null
+     * @return the access token now set on the SpotifyApi
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    synchronized String refresh(final String staleToken) throws IOException, SpotifyWebApiException {
+        if (accessToken != null && !accessToken.equals(staleToken)) {
+            return accessToken;
+        }
+
+        final ClientCredentials credentials = clientCredentialsRequest.execute();
+        final long expiresInMillis = TimeUnit.SECONDS.toMillis(credentials.getExpiresIn());
+        // never refresh more often than every half lifetime, even with a huge margin
+        final long refreshInMillis = Math.max(expiresInMillis / 2, expiresInMillis - refreshMarginMillis);
+
+        spotifyApi.setAccessToken(credentials.getAccessToken());
+        accessToken = credentials.getAccessToken();
+        refreshAtMillis = System.currentTimeMillis() + refreshInMillis;
+        log.debug("Credentials expire in: " + credentials.getExpiresIn() + "s, refreshing in " + refreshInMillis + "ms");
+
+        scheduleRefresh(refreshInMillis);
+        return accessToken;
+    }
+
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private void scheduleRefresh(final long delayMillis) {
+        final String scheduledFor = accessToken;
+        refresher.schedule(() -> {
+            try {
+                refresh(scheduledFor);
+            } catch (final IOException | SpotifyWebApiException | RuntimeException e) {
+                // the current token is still good until refreshAtMillis passes, callers refresh it after that
+                log.warn("background token refresh failed, retrying in " + RETRY_DELAY_MILLIS + "ms", e);
+                if (scheduledFor != null && scheduledFor.equals(accessToken)) {
+                    scheduleRefresh(RETRY_DELAY_MILLIS);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
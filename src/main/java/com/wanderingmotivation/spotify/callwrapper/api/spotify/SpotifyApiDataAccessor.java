@@ -1,13 +1,23 @@
 package com.wanderingmotivation.spotify.callwrapper.api.spotify;
 
+import com.wanderingmotivation.spotify.callwrapper.cache.AudioFeaturesStore;
+import com.wanderingmotivation.spotify.callwrapper.cache.PlaylistSnapshot;
+import com.wanderingmotivation.spotify.callwrapper.cache.SpotifyEntityCache;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackBatch;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackFields;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackLookupResult;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedAlbum;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedArtist;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedAudioFeatures;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedPlaylist;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedTrack;
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import com.wanderingmotivation.spotify.callwrapper.util.ThrowingConsumer;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.model_objects.specification.Album;
 import com.wrapper.spotify.model_objects.specification.AlbumSimplified;
 import com.wrapper.spotify.model_objects.specification.Artist;
+import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
 import com.wrapper.spotify.model_objects.specification.AudioFeatures;
 import com.wrapper.spotify.model_objects.specification.Paging;
 import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
@@ -16,33 +26,84 @@ import com.wrapper.spotify.model_objects.specification.Track;
 import com.wrapper.spotify.model_objects.specification.TrackSimplified;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.ListUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class SpotifyApiDataAccessor {
     private final SpotifyApiWrapper spotifyApiWrapper;
+    private final SpotifyRequestCoalescer requestCoalescer = new SpotifyRequestCoalescer();
+    private final SpotifyCallExecutor spotifyCallExecutor;
+    private final SpotifyPaginator paginator;
+    private final SpotifyTrackBatcher trackBatcher;
+    private final SpotifyEntityCache entityCache;
+    private final SpotifySearchCache searchCache;
+    private final AudioFeaturesStore audioFeaturesStore;
+    private final int maxTrackChunksInFlight;
 
     SpotifyApiDataAccessor(SpotifyApiWrapper spotifyApiWrapper) {
+        this(spotifyApiWrapper,
+                new SpotifyCallExecutor(1),
+                new SpotifyTrackBatcher(spotifyApiWrapper, 0, 1),
+                new SpotifyEntityCache(0, 0, 0, 0, 0, 0, 0, 0, 0),
+                new SpotifySearchCache(0, 0, 0),
+                new AudioFeaturesStore("", 1000),
+                1,
+                1);
+    }
+
+    @Autowired
+    SpotifyApiDataAccessor(SpotifyApiWrapper spotifyApiWrapper,
+                           SpotifyCallExecutor spotifyCallExecutor,
+                           SpotifyTrackBatcher trackBatcher,
+                           SpotifyEntityCache entityCache,
+                           SpotifySearchCache searchCache,
+                           AudioFeaturesStore audioFeaturesStore,
+                           @Value("${spotify.concurrency.track-chunks:4}") int maxTrackChunksInFlight,
+                           @Value("${spotify.concurrency.pages:4}") int maxPagesInFlight) {
         this.spotifyApiWrapper = spotifyApiWrapper;
+        this.spotifyCallExecutor = spotifyCallExecutor;
+        this.paginator = new SpotifyPaginator(spotifyCallExecutor, maxPagesInFlight);
+        this.trackBatcher = trackBatcher;
+        this.entityCache = entityCache;
+        this.searchCache = searchCache;
+        this.audioFeaturesStore = audioFeaturesStore;
+        this.maxTrackChunksInFlight = Math.max(1, maxTrackChunksInFlight);
     }
 
     /**
      * Searches for an artist
+     * Queries that only differ in case or whitespace share cached results
      * @param search search parameter matching spotify-web-api-java's SearchArtistsRequest
      * @return list of artists returned
      * @throws IOException
      * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
      */
     public List<WrappedArtist> searchForArtist(final String search) throws IOException, SpotifyWebApiException {
+        return cachedSearch(this::fetchArtistSearch, WrappedArtist::new, "searchForArtist", search);
+    }
+
+    private List<WrappedArtist> fetchArtistSearch(final String search) throws IOException, SpotifyWebApiException {
         final Paging<Artist> spotifyArtists = spotifyApiWrapper.searchForArtist(search);
 
         return Arrays.stream(spotifyArtists.getItems())
@@ -52,32 +113,44 @@ public class SpotifyApiDataAccessor {
 
     /**
      * Searches for an album
+     * Queries that only differ in case or whitespace share cached results, and albums come from the album cache
+     * when they're in it
      * @param search search parameter matching spotify-web-api-java's SearchAlbumsRequest
      * @return list of albums returned
      * @throws IOException
      * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
      */
     public List<WrappedAlbum> searchForAlbum(final String search) throws IOException, SpotifyWebApiException {
+        return cachedSearch(this::fetchAlbumSearch, WrappedAlbum::new, "searchForAlbum", search);
+    }
+
+    private List<WrappedAlbum> fetchAlbumSearch(final String search) throws IOException, SpotifyWebApiException {
         final Paging<AlbumSimplified> simpleAlbums = spotifyApiWrapper.searchForAlbum(search);
-        final String[] albumIds = Arrays.stream(simpleAlbums.getItems())
+        final List<String> albumIds = Arrays.stream(simpleAlbums.getItems())
                 .map(AlbumSimplified::getId)
-                .collect(Collectors.toList())
-                .toArray(new String[] {});
+                .collect(Collectors.toList());
 
-        final Album[] spotifyAlbums = spotifyApiWrapper.getSpotifyAlbums(albumIds);
-        return Arrays.stream(spotifyAlbums)
-                .map(WrappedAlbum::new)
+        final Map<String, WrappedAlbum> albums = getAlbums(albumIds);
+        return albumIds.stream()
+                .map(albums::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
     /**
      * Searches for a playlist
+     * Queries that only differ in case or whitespace share cached results
      * @param search search parameter matching spotify-web-api-java's SearchPlaylistsRequest
      * @return list of playlists returned
      * @throws IOException
      * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
      */
     public List<WrappedPlaylist> searchForPlaylist(final String search) throws IOException, SpotifyWebApiException {
+        return cachedSearch(this::fetchPlaylistSearch, WrappedPlaylist::new, "searchForPlaylist", search);
+    }
+
+    private List<WrappedPlaylist> fetchPlaylistSearch(final String search)
+            throws IOException, SpotifyWebApiException {
         final Paging<PlaylistSimplified> simplePlaylists = spotifyApiWrapper.searchForPlaylist(search);
 
         return Arrays.stream(simplePlaylists.getItems())
@@ -85,30 +158,47 @@ public class SpotifyApiDataAccessor {
                 .collect(Collectors.toList());
     }
 
+    private <T> List<T> cachedSearch(final SearchFetch<List<T>> fetch,
+                                     final UnaryOperator<T> copier,
+                                     final String operation,
+                                     final String search) throws IOException, SpotifyWebApiException {
+        final String query = SpotifySearchCache.normalize(search);
+        try (RequestTrace.Scope ignored = RequestTrace.stage("search")) {
+            return searchCache.get(() -> requestCoalescer.coalesce(() -> fetch.fetch(query), operation,
+                    SpotifySearchCache.cacheKey(query)), operation, query, copier);
+        }
+    }
+
     /**
      * Get full track information for an artist
+     * Concurrent requests for the same artist share one crawl
      * @param artistId Spotify URI for an artist
-     * @return Map of artist, track, and album information
+     * @param fields track fields the caller needs, audio features are only fetched if one of them is asked for
+     * @return artist, track, and album information for every track, serializing only the requested fields
      * @throws IOException
      * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
      */
-    public Map<String, WrappedTrack> getArtistTracks(final String artistId)
+    public TrackBatch getArtistTracks(final String artistId, final TrackFields fields)
+            throws SpotifyWebApiException, IOException {
+        final TrackBatch tracks = requestCoalescer.coalesce(() -> fetchArtistTracks(artistId, fields),
+                "getArtistTracks", artistId, fields.includesAudioFeatures());
+        return tracks.withFields(fields);
+    }
+
+    private TrackBatch fetchArtistTracks(final String artistId, final TrackFields fields)
             throws SpotifyWebApiException, IOException {
         final long startTime = System.currentTimeMillis();
         log.debug("starting get artist track info");
 
-        final Map<String, WrappedAlbum> albums = getManyAlbums(artistId);
-
-        final List<String> albumIds = albums.values()
-                .stream()
-                .map(WrappedAlbum::getSpotifyId)
-                .collect(Collectors.toList());
+        final List<String> trackIds = getArtistTrackIds(artistId);
 
         final long albumTime = System.currentTimeMillis();
         log.debug("got album info, took: " + (albumTime - startTime) + "ms");
 
-        final List<String> trackIds = getAlbumTracks(albumIds);
-        final Map<String, WrappedTrack> tracks = getManyTracks(trackIds, artistId);
+        final TrackBatch tracks;
+        try (RequestTrace.Scope ignored = RequestTrace.stage("tracks")) {
+            tracks = getTrackBatch(trackIds, artistId, fields);
+        }
 
         final long trackTime = System.currentTimeMillis();
         log.debug("got track info, took: " + (trackTime - albumTime) + "ms");
@@ -116,116 +206,563 @@ public class SpotifyApiDataAccessor {
         return tracks;
     }
 
+    /**
+     * Get full track information for many artists and tracks at once
+     * Work is deduplicated across the whole batch: albums shared between the artists are hydrated and paged through
+     * once, and every track is fetched once over the union of the artists' and the requested track ids, before the
+     * results are split back up per artist and per requested track
+     * @param artistIds Spotify URIs for artists, may be null
+     * @param trackIds Spotify track ids, may be null
+     * @param fields track fields the caller needs, audio features are only fetched if one of them is asked for
+     * @return tracks per artist and the requested tracks, serializing only the requested fields
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    public TrackLookupResult lookupTracks(final List<String> artistIds,
+                                          final List<String> trackIds,
+                                          final TrackFields fields)
+            throws SpotifyWebApiException, IOException {
+        final List<String> distinctArtistIds = distinct(artistIds);
+        final List<String> distinctTrackIds = distinct(trackIds);
+
+        final Map<String, List<String>> artistTrackIds = distinctArtistIds.isEmpty() ?
+                Collections.emptyMap() :
+                getArtistTrackIds(distinctArtistIds);
+
+        final Set<String> allTrackIds = new LinkedHashSet<>(distinctTrackIds);
+        artistTrackIds.values().forEach(allTrackIds::addAll);
+        log.debug(String.format("looking up %s distinct tracks for %s artists and %s tracks",
+                allTrackIds.size(), distinctArtistIds.size(), distinctTrackIds.size()));
+
+        final Map<String, WrappedTrack> tracks;
+        try (RequestTrace.Scope ignored = RequestTrace.stage("tracks")) {
+            tracks = getManyTracks(new ArrayList<>(allTrackIds), null, fields);
+        }
+
+        final Map<String, TrackBatch> tracksByArtist = new LinkedHashMap<>();
+        artistTrackIds.forEach((artistId, ids) ->
+                tracksByArtist.put(artistId, toTrackBatch(ids, tracks, artistId, fields)));
+        return new TrackLookupResult(tracksByArtist, toTrackBatch(distinctTrackIds, tracks, null, fields));
+    }
+
+    private static List<String> distinct(final List<String> ids) {
+        return ids == null ? Collections.emptyList() : ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static TrackBatch toTrackBatch(final List<String> trackIds,
+                                           final Map<String, WrappedTrack> tracks,
+                                           final String artistId,
+                                           final TrackFields fields) {
+        final TrackBatch batch = new TrackBatch(trackIds.size());
+        final List<WrappedTrack> found = trackIds.stream()
+                .map(tracks::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        filterByArtist(found, artistId).forEach(batch::add);
+        return batch.withFields(fields);
+    }
+
     /**
      * Gets all tracks for a playlist
+     * The assembled tracks are kept per playlist along with the snapshot id they're for, and reused for as long as
+     * the playlist's snapshot id stays the same
      * @param playlistId Spotify playlist id
-     * @return map of track id to track information
+     * @param fields track fields the caller needs, audio features are only fetched if one of them is asked for
+     * @return information for every track, serializing only the requested fields
      * @throws IOException
      * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
      */
-    public Map<String, WrappedTrack> getPlaylistTracks(final String playlistId)
+    public TrackBatch getPlaylistTracks(final String playlistId, final TrackFields fields)
             throws IOException, SpotifyWebApiException {
-        final List<String> trackIds = new ArrayList<>();
-        for (int offset = 0; ; offset += SpotifyApiConstants.PLAYLIST_TRACK_PAGE_SIZE) {
-            final Paging<PlaylistTrack> page = spotifyApiWrapper.getSpotifyPlaylistTracks(playlistId, offset);
-            final int totalTracks = page.getTotal();
-            log.debug(String.format("getting ids for playlist tracks %s to %s out of %s",
-                    offset, offset + SpotifyApiConstants.PLAYLIST_TRACK_PAGE_SIZE, totalTracks));
-            trackIds.addAll(Arrays.stream(page.getItems())
-                    .map(PlaylistTrack::getTrack)
-                    .map(Track::getId)
-                    .collect(Collectors.toList()));
+        return getPlaylistTracks(playlistId, getPlaylistSnapshotId(playlistId), fields);
+    }
+
+    /**
+     * Gets all tracks for a playlist as of a snapshot id the caller already looked up
+     * @param playlistId Spotify playlist id
+     * @param snapshotId the playlist's current snapshot id from getPlaylistSnapshotId
+     * @param fields track fields the caller needs, audio features are only fetched if one of them is asked for
+     * @return information for every track, serializing only the requested fields
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    public TrackBatch getPlaylistTracks(final String playlistId, final String snapshotId, final TrackFields fields)
+            throws IOException, SpotifyWebApiException {
+        final TrackBatch tracks = requestCoalescer.coalesce(() -> fetchPlaylistTracks(playlistId, snapshotId, fields),
+                "getPlaylistTracks", playlistId, snapshotId, fields.includesAudioFeatures());
+        return tracks.withFields(fields);
+    }
+
+    private TrackBatch fetchPlaylistTracks(final String playlistId, final String snapshotId, final TrackFields fields)
+            throws IOException, SpotifyWebApiException {
+        final PlaylistSnapshot cached = entityCache.getPlaylistCache().get(playlistId);
+        if (cached != null && cached.getSnapshotId().equals(snapshotId) &&
+                (cached.isIncludesAudioFeatures() || !fields.includesAudioFeatures())) {
+            log.debug("playlist " + playlistId + " unchanged since snapshot " + snapshotId);
+            RequestTrace.countCacheHits(cached.getTracks().size());
+            return cached.getTracks();
+        }
+
+        final List<String> trackIds;
+        try (RequestTrace.Scope ignored = RequestTrace.stage("playlist-tracks")) {
+            trackIds = getPlaylistTrackIds(playlistId);
+        }
+        final TrackBatch tracks;
+        try (RequestTrace.Scope ignored = RequestTrace.stage("tracks")) {
+            tracks = getTrackBatch(trackIds, null, fields);
+        }
+        entityCache.getPlaylistCache().put(playlistId, new PlaylistSnapshot(snapshotId, tracks,
+                fields.includesAudioFeatures(), System.currentTimeMillis()));
+        return tracks;
+    }
+
+    /**
+     * Gets the playlist's current snapshot id with a single lightweight call
+     * A cached playlist whose snapshot id was confirmed recently enough is trusted without asking Spotify at all
+     * @param playlistId Spotify playlist id
+     * @return snapshot id, which changes whenever the playlist is edited
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    public String getPlaylistSnapshotId(final String playlistId) throws IOException, SpotifyWebApiException {
+        try (RequestTrace.Scope ignored = RequestTrace.stage("playlist-snapshot")) {
+            final PlaylistSnapshot cached = entityCache.getPlaylistCache().get(playlistId);
+            final long now = System.currentTimeMillis();
+            if (cached != null && now - cached.getCheckedAtMillis() < entityCache.getPlaylistSnapshotCheckMillis()) {
+                RequestTrace.countCacheHits(1);
+                return cached.getSnapshotId();
+            }
 
-            if (offset + SpotifyApiConstants.PLAYLIST_TRACK_PAGE_SIZE >= totalTracks) {
-                break;
+            final String snapshotId = requestCoalescer.coalesce(() ->
+                    spotifyApiWrapper.getSpotifyPlaylistSnapshotId(playlistId), "getPlaylistSnapshotId", playlistId);
+            if (cached != null && cached.getSnapshotId().equals(snapshotId)) {
+                cached.setCheckedAtMillis(System.currentTimeMillis());
             }
+            return snapshotId;
         }
-        return getManyTracks(trackIds, null);
     }
 
-    Map<String, WrappedAlbum> getManyAlbums(final String artistId) throws IOException, SpotifyWebApiException {
-        final List<String> albumIds = new ArrayList<>();
+    /**
+     * Streams full track information for an artist a chunk at a time instead of building the whole map
+     * @param artistId Spotify URI for an artist
+     * @param fields track fields the caller needs, audio features are only fetched if one of them is asked for
+     * @param chunkConsumer called with each chunk of tracks as soon as it's ready
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    public void streamArtistTracks(final String artistId,
+                                   final TrackFields fields,
+                                   final ThrowingConsumer<List<WrappedTrack>, IOException> chunkConsumer)
+            throws IOException, SpotifyWebApiException {
+        forEachTrackChunk(getArtistTrackIds(artistId), artistId, fields, chunkConsumer);
+    }
 
-        for (int offset = 0; ; offset += SpotifyApiConstants.ARTIST_ALBUM_PAGE_SIZE) {
-            final Paging<AlbumSimplified> page = spotifyApiWrapper.getSpotifyArtistsAlbums(artistId, offset);
-            final int totalAlbums = page.getTotal();
-            log.debug(String.format("getting ids for artist albums %s to %s out of %s",
-                    offset, offset + SpotifyApiConstants.ARTIST_ALBUM_PAGE_SIZE, totalAlbums));
-            albumIds.addAll(Arrays.stream(page.getItems())
-                    .map(AlbumSimplified::getId)
-                    .collect(Collectors.toList()));
+    /**
+     * Streams all tracks for a playlist a chunk at a time instead of building the whole map
+     * @param playlistId Spotify playlist id
+     * @param fields track fields the caller needs, audio features are only fetched if one of them is asked for
+     * @param chunkConsumer called with each chunk of tracks as soon as it's ready
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    public void streamPlaylistTracks(final String playlistId,
+                                     final TrackFields fields,
+                                     final ThrowingConsumer<List<WrappedTrack>, IOException> chunkConsumer)
+            throws IOException, SpotifyWebApiException {
+        forEachTrackChunk(getPlaylistTrackIds(playlistId), null, fields, chunkConsumer);
+    }
+
+    private List<String> getPlaylistTrackIds(final String playlistId) throws IOException, SpotifyWebApiException {
+        return paginator.fetchAll("ids for playlist tracks",
+                offset -> spotifyApiWrapper.getSpotifyPlaylistTracks(playlistId, offset),
+                0, SpotifyApiConstants.PLAYLIST_TRACK_PAGE_SIZE)
+                .stream()
+                .map(PlaylistTrack::getTrack)
+                .map(Track::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the track ids for every album of an artist
+     * The album listing is always fetched, but albums already in the artist's last discography snapshot reuse the
+     * track ids recorded there, so only albums that are new since then get hydrated and paged through
+     * Tracks on appears on and compilation albums that list other artists only are left out, so they never get
+     * hydrated
+     * @param artistId Spotify URI for an artist
+     * @return track ids in album listing order, then track order within each album
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    List<String> getArtistTrackIds(final String artistId) throws IOException, SpotifyWebApiException {
+        return getArtistTrackIds(Collections.singletonList(artistId)).get(artistId);
+    }
+
+    /**
+     * Gets the track ids for every album of each artist, like getArtistTrackIds does for one
+     * An album that's new for several of the artists, like a collaboration or a compilation they're all on, is
+     * hydrated and paged through once for all of them
+     * @param artistIds distinct Spotify URIs for artists
+     * @return per artist, track ids in album listing order, then track order within each album
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    private Map<String, List<String>> getArtistTrackIds(final List<String> artistIds)
+            throws IOException, SpotifyWebApiException {
+        final List<List<String>> albumIdsByArtist;
+        try (RequestTrace.Scope ignored = RequestTrace.stage("artist-albums")) {
+            // a lone listing stays on this thread so the paginator can still fetch its pages concurrently
+            albumIdsByArtist = artistIds.size() == 1 ?
+                    Collections.singletonList(getArtistAlbumIds(artistIds.get(0))) :
+                    spotifyCallExecutor.invokeAll(artistIds.stream()
+                            .map(id -> (SpotifyCall<List<String>>) () -> getArtistAlbumIds(id))
+                            .collect(Collectors.toList()));
+        }
+
+        final List<Map<String, List<String>>> knownAlbumTrackIdsByArtist = new ArrayList<>(artistIds.size());
+        final Set<String> newAlbumIds = new LinkedHashSet<>();
+        int knownAlbumCount = 0;
+        int albumCount = 0;
+        for (int i = 0; i < artistIds.size(); i++) {
+            final Map<String, List<String>> previousSnapshot =
+                    entityCache.getDiscographyCache().get(artistIds.get(i));
+            final Map<String, List<String>> knownAlbumTrackIds = previousSnapshot != null ?
+                    previousSnapshot :
+                    Collections.emptyMap();
+            knownAlbumTrackIdsByArtist.add(knownAlbumTrackIds);
+            for (final String albumId : albumIdsByArtist.get(i)) {
+                if (knownAlbumTrackIds.containsKey(albumId)) {
+                    knownAlbumCount++;
+                } else {
+                    newAlbumIds.add(albumId);
+                }
+                albumCount++;
+            }
+        }
+        log.debug(String.format("%s of %s albums are new since the last snapshot",
+                albumCount - knownAlbumCount, albumCount));
+
+        final Map<String, Map<String, List<String>>> newAlbumTrackArtistIds;
+        try (RequestTrace.Scope ignored = RequestTrace.stage("album-tracks")) {
+            RequestTrace.countCacheHits(knownAlbumCount);
+            newAlbumTrackArtistIds = newAlbumIds.isEmpty() ?
+                    Collections.emptyMap() :
+                    getAlbumTrackArtistIds(getAlbums(new ArrayList<>(newAlbumIds)).values());
+        }
 
-            if (offset + SpotifyApiConstants.ARTIST_ALBUM_PAGE_SIZE >= totalAlbums) {
-                break;
+        final Map<String, List<String>> trackIdsByArtist = new LinkedHashMap<>();
+        for (int i = 0; i < artistIds.size(); i++) {
+            final String artistId = artistIds.get(i);
+            final Map<String, List<String>> knownAlbumTrackIds = knownAlbumTrackIdsByArtist.get(i);
+
+            // albums dropped from the listing fall out of the snapshot here
+            final Map<String, List<String>> snapshot = new LinkedHashMap<>();
+            for (final String albumId : albumIdsByArtist.get(i)) {
+                if (knownAlbumTrackIds.containsKey(albumId)) {
+                    snapshot.put(albumId, knownAlbumTrackIds.get(albumId));
+                } else if (newAlbumTrackArtistIds.containsKey(albumId)) {
+                    snapshot.put(albumId,
+                            tracksIncludingArtist(albumId, newAlbumTrackArtistIds.get(albumId), artistId));
+                }
             }
+            entityCache.getDiscographyCache().put(artistId, Collections.unmodifiableMap(snapshot));
+
+            trackIdsByArtist.put(artistId, snapshot.values()
+                    .stream()
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList()));
         }
+        return trackIdsByArtist;
+    }
+
+    private List<String> getArtistAlbumIds(final String artistId) throws IOException, SpotifyWebApiException {
+        return paginator.fetchAll("ids for artist albums",
+                offset -> spotifyApiWrapper.getSpotifyArtistsAlbums(artistId, offset),
+                0, SpotifyApiConstants.ARTIST_ALBUM_PAGE_SIZE)
+                .stream()
+                .map(AlbumSimplified::getId)
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, WrappedAlbum> getAlbums(final List<String> albumIds)
+            throws IOException, SpotifyWebApiException {
+        final Map<String, WrappedAlbum> albums = entityCache.getAlbumCache().getAll(albumIds);
+        final List<String> missingAlbumIds = albumIds.stream()
+                .filter(id -> !albums.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        log.debug(String.format("%s of %s albums cached", albums.size(), albumIds.size()));
+        RequestTrace.countCacheHits(albums.size());
 
-        final Map<String, WrappedAlbum> albums = new HashMap<>();
-        final List<List<String>> partitions = ListUtils.partition(albumIds, SpotifyApiConstants.ALBUM_PAGE_SIZE);
+        final List<List<String>> partitions = ListUtils.partition(missingAlbumIds, SpotifyApiConstants.ALBUM_PAGE_SIZE);
         for (final List<String> chunk : partitions) {
             final String[] chunkArray = chunk.toArray(new String[] {});
             final Album[] spotifyAlbums = spotifyApiWrapper.getSpotifyAlbums(chunkArray);
             for (final Album a : spotifyAlbums) {
-                albums.put(a.getId(), new WrappedAlbum(a));
+                final WrappedAlbum album = new WrappedAlbum(a);
+                entityCache.getAlbumCache().put(album.getSpotifyId(), album);
+                albums.put(album.getSpotifyId(), album);
             }
         }
         return albums;
     }
 
-    List<String> getAlbumTracks(final List<String> albumIds) throws IOException, SpotifyWebApiException {
-        final List<String> trackIds = new ArrayList<>();
+    /**
+     * Gets the tracks of albums that were already fetched with their first page of tracks embedded, along with the
+     * artists listed on each track, paging through longer albums concurrently on the spotify call executor
+     * @param albums albums from getAlbums
+     * @return per album, track id to its artist ids or null when Spotify didn't list them, in album order, then
+     * track order within each album
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    Map<String, Map<String, List<String>>> getAlbumTrackArtistIds(final Collection<WrappedAlbum> albums)
+            throws IOException, SpotifyWebApiException {
+        final List<WrappedAlbum> albumList = new ArrayList<>(albums);
+        final List<SpotifyCall<Map<String, List<String>>>> albumCalls = albumList.stream()
+                .map(album -> (SpotifyCall<Map<String, List<String>>>) () -> {
+                    final Map<String, List<String>> embeddedArtistIds = album.getTrackArtistIds() != null ?
+                            album.getTrackArtistIds() :
+                            Collections.emptyMap();
+                    final Map<String, List<String>> trackArtistIds = new LinkedHashMap<>();
+                    album.getTrackIds().forEach(id -> trackArtistIds.put(id, embeddedArtistIds.get(id)));
+                    final int embeddedTrackCount = album.getTrackIds().size();
+                    if (album.getTotalTracks() > embeddedTrackCount) {
+                        trackArtistIds.putAll(getAlbumTrackArtistIds(album.getSpotifyId(), embeddedTrackCount));
+                    }
+                    return trackArtistIds;
+                })
+                .collect(Collectors.toList());
+
+        final List<Map<String, List<String>>> albumTrackArtistIds = spotifyCallExecutor.invokeAll(albumCalls);
+        final Map<String, Map<String, List<String>>> trackArtistIdsByAlbum = new LinkedHashMap<>();
+        for (int i = 0; i < albumList.size(); i++) {
+            trackArtistIdsByAlbum.put(albumList.get(i).getSpotifyId(), albumTrackArtistIds.get(i));
+        }
+        return trackArtistIdsByAlbum;
+    }
 
-        for (final String albumId : albumIds) {
-            for (int offset = 0; ; offset += SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE) {
-                final Paging<TrackSimplified> page = spotifyApiWrapper.getSpotifyAlbumTracks(albumId, offset);
-                final int totalTracks = page.getTotal();
-                log.debug(String.format("getting ids for album tracks %s to %s out of %s",
-                        offset, offset + SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE, totalTracks));
-                trackIds.addAll(Arrays.stream(page.getItems())
-                        .map(TrackSimplified::getId)
-                        .collect(Collectors.toList()));
+    private Map<String, List<String>> getAlbumTrackArtistIds(final String albumId, final int startOffset)
+            throws IOException, SpotifyWebApiException {
+        final Map<String, List<String>> trackArtistIds = new LinkedHashMap<>();
+        paginator.fetchAll("ids for album tracks",
+                offset -> spotifyApiWrapper.getSpotifyAlbumTracks(albumId, offset),
+                startOffset, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE)
+                .forEach(t -> trackArtistIds.put(t.getId(), getArtistIds(t)));
+        return trackArtistIds;
+    }
 
-                if (offset + SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE >= totalTracks) {
-                    break;
-                }
-            }
+    static List<String> tracksIncludingArtist(final String albumId,
+                                              final Map<String, List<String>> trackArtistIds,
+                                              final String artistId) {
+        final List<String> trackIds = trackArtistIds.entrySet()
+                .stream()
+                .filter(t -> includesArtist(t.getValue(), artistId))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        if (trackIds.size() < trackArtistIds.size()) {
+            log.debug(String.format("dropped %s of %s tracks on album %s without artist %s",
+                    trackArtistIds.size() - trackIds.size(), trackArtistIds.size(), albumId, artistId));
         }
         return trackIds;
     }
 
+    private static List<String> getArtistIds(final TrackSimplified track) {
+        return track.getArtists() == null ? null : Arrays.stream(track.getArtists())
+                .map(ArtistSimplified::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tracks without artist information are kept, the artist filter on the hydrated tracks still applies to them
+     */
+    private static boolean includesArtist(final List<String> trackArtistIds, final String artistId) {
+        return artistId == null || trackArtistIds == null || trackArtistIds.contains(artistId);
+    }
+
+    /**
+     * Gets full track information, chunked by the several tracks limit
+     * @param trackIds Spotify track ids
+     * @param artistId if not null, tracks that don't include this artist are dropped
+     * @return map of track id to track information
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
     Map<String, WrappedTrack> getManyTracks(final List<String> trackIds, final String artistId)
             throws IOException, SpotifyWebApiException {
+        return getManyTracks(trackIds, artistId, TrackFields.ALL);
+    }
+
+    /**
+     * Gets track information with audio features only when the requested fields need them
+     * @param trackIds Spotify track ids
+     * @param artistId if not null, tracks that don't include this artist are dropped
+     * @param fields track fields the caller needs
+     * @return map of track id to track information
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    Map<String, WrappedTrack> getManyTracks(final List<String> trackIds,
+                                            final String artistId,
+                                            final TrackFields fields)
+            throws IOException, SpotifyWebApiException {
         final Map<String, WrappedTrack> tracks = new HashMap<>();
-        final List<List<String>> partitions = ListUtils.partition(trackIds, SpotifyApiConstants.TRACK_PAGE_SIZE);
+        forEachTrackChunk(trackIds, artistId, fields, chunk -> chunk.forEach(t -> tracks.put(t.getSpotifyId(), t)));
+        return tracks;
+    }
 
-        int i = 0;
-        final int totalTracks = trackIds.size();
+    /**
+     * Gets track information straight into a columnar batch, so a large result doesn't keep an object per track
+     * Each chunk's WrappedTracks are only around until they're copied in
+     * @param trackIds Spotify track ids
+     * @param artistId if not null, tracks that don't include this artist are dropped
+     * @param fields track fields the caller needs
+     * @return the tracks, in the order they were fetched
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    TrackBatch getTrackBatch(final List<String> trackIds, final String artistId, final TrackFields fields)
+            throws IOException, SpotifyWebApiException {
+        final TrackBatch tracks = new TrackBatch(trackIds.size());
+        forEachTrackChunk(trackIds, artistId, fields, chunk -> chunk.forEach(tracks::add));
+        return tracks;
+    }
 
-        for (final List<String> chunk : partitions) {
+    /**
+     * Gets full track information, handing it over a chunk at a time as soon as each chunk is ready
+     * Tracks already in the entity cache aren't fetched again and come first. The rest are fetched in chunks that
+     * each ask for tracks and audio features at the same time, up to maxTrackChunksInFlight chunks run at once.
+     * Lookups go through the track batcher, so partial chunks get topped up with ids from other in-flight requests.
+     * When the fields don't include any audio features those aren't fetched, and the tracks missing them aren't
+     * cached.
+     * @param trackIds Spotify track ids
+     * @param artistId if not null, tracks that don't include this artist are dropped
+     * @param fields track fields the caller needs
+     * @param chunkConsumer called on the calling thread with each chunk of tracks, never with the same track twice
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    void forEachTrackChunk(final List<String> trackIds,
+                           final String artistId,
+                           final TrackFields fields,
+                           final ThrowingConsumer<List<WrappedTrack>, IOException> chunkConsumer)
+            throws IOException, SpotifyWebApiException {
+        final Map<String, WrappedTrack> cachedTracks = entityCache.getTrackCache().getAll(trackIds);
+        final List<String> missingTrackIds = trackIds.stream()
+                .filter(id -> !cachedTracks.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        log.debug(String.format("%s of %s tracks cached", cachedTracks.size(), trackIds.size()));
+        RequestTrace.countCacheHits(cachedTracks.size());
+        if (!cachedTracks.isEmpty()) {
+            chunkConsumer.accept(filterByArtist(cachedTracks.values(), artistId));
+        }
 
-            final String[] chunkArray = chunk.toArray(new String[] {});
-            final Track[] spotifyTracks = spotifyApiWrapper.getSpotifyTracks(chunkArray);
-            final AudioFeatures[] spotifyAudioFeatures = spotifyApiWrapper.getSpotifyAudioFeatures(chunkArray);
+        final List<List<String>> partitions = ListUtils.partition(missingTrackIds, SpotifyApiConstants.TRACK_PAGE_SIZE);
+        final BlockingQueue<CompletableFuture<List<WrappedTrack>>> finishedChunks = new LinkedBlockingQueue<>();
+        final List<CompletableFuture<?>> pendingCalls = new ArrayList<>();
+
+        int submitted = 0;
+        int merged = 0;
+        final int totalTracks = missingTrackIds.size();
+
+        try {
+            while (merged < partitions.size()) {
+                if (submitted < partitions.size() && submitted - merged < maxTrackChunksInFlight) {
+                    final CompletableFuture<List<WrappedTrack>> chunk =
+                            getTrackChunk(partitions.get(submitted++), fields.includesAudioFeatures(), pendingCalls);
+                    chunk.whenComplete((t, e) -> finishedChunks.add(chunk));
+                    continue;
+                }
 
-            for (final Track t : spotifyTracks) {
-                tracks.put(t.getId(), new WrappedTrack(t));
-            }
-            for (final AudioFeatures a : spotifyAudioFeatures) {
-                // some tracks don't have audio features so their slot in the list is empty, hence the null check
-                if (a != null && tracks.containsKey(a.getId())) {
-                    final WrappedTrack t = tracks.get(a.getId());
-                    t.setAudioFeatures(a);
+                final List<WrappedTrack> chunkTracks = SpotifyCallExecutor.await(takeChunk(finishedChunks));
+                if (fields.includesAudioFeatures()) {
+                    chunkTracks.forEach(t -> entityCache.getTrackCache().put(t.getSpotifyId(), t));
                 }
+                merged++;
+                log.debug(String.format("got track information for %s of %s chunks, %s tracks total",
+                        merged, partitions.size(), totalTracks));
+                chunkConsumer.accept(filterByArtist(chunkTracks, artistId));
             }
-            log.debug(String.format("getting track information for %s to %s out of %s",
-                    i, i += SpotifyApiConstants.TRACK_PAGE_SIZE, totalTracks));
+        } finally {
+            // only matters on failure, keeps the rest of the chunks from going out
+            pendingCalls.forEach(c -> c.cancel(false));
         }
+    }
 
-        return tracks.values()
-                .stream()
+    private static List<WrappedTrack> filterByArtist(final Collection<WrappedTrack> tracks, final String artistId) {
+        return tracks.stream()
                 // remove tracks that might be on collaborative albums that don't include the artist
-                // could do this earlier but the format of ArtistSimplified makes it a bit more annoying
+                // most are already dropped from the album track listings, this catches ones listed without artists
                 .filter(t -> artistId == null || t.getArtistIds().contains(artistId))
-                .collect(Collectors.toMap(WrappedTrack::getSpotifyId, t -> t));
+                .collect(Collectors.toList());
+    }
+
+    private CompletableFuture<List<WrappedTrack>> getTrackChunk(final List<String> chunk,
+                                                                final boolean includeAudioFeatures,
+                                                                final List<CompletableFuture<?>> pendingCalls) {
+        final CompletableFuture<List<Track>> spotifyTracks = trackBatcher.getTracks(chunk);
+        pendingCalls.add(spotifyTracks);
+        if (!includeAudioFeatures) {
+            return spotifyTracks.thenApply(t -> combineTrackChunk(t, Collections.emptyMap(), Collections.emptyList()));
+        }
+
+        // audio features never change, so only ask for the ones that aren't stored yet
+        final Map<String, WrappedAudioFeatures> storedAudioFeatures = audioFeaturesStore.getAll(chunk);
+        RequestTrace.countCacheHits(storedAudioFeatures.size());
+        final List<String> missingAudioFeatureIds = chunk.stream()
+                .filter(id -> !storedAudioFeatures.containsKey(id))
+                .collect(Collectors.toList());
+        final CompletableFuture<List<AudioFeatures>> spotifyAudioFeatures =
+                trackBatcher.getAudioFeatures(missingAudioFeatureIds);
+        pendingCalls.add(spotifyAudioFeatures);
+
+        return spotifyTracks.thenCombine(spotifyAudioFeatures,
+                (t, a) -> combineTrackChunk(t, storedAudioFeatures, a));
+    }
+
+    private List<WrappedTrack> combineTrackChunk(final List<Track> spotifyTracks,
+                                                 final Map<String, WrappedAudioFeatures> storedAudioFeatures,
+                                                 final List<AudioFeatures> spotifyAudioFeatures) {
+        // some tracks don't have audio features so their slot in the list is empty, hence the null check
+        final List<WrappedAudioFeatures> newAudioFeatures = spotifyAudioFeatures.stream()
+                .filter(Objects::nonNull)
+                .map(WrappedAudioFeatures::new)
+                .collect(Collectors.toList());
+        audioFeaturesStore.putAll(newAudioFeatures);
+
+        final Map<String, WrappedAudioFeatures> audioFeatures = new HashMap<>(storedAudioFeatures);
+        newAudioFeatures.forEach(a -> audioFeatures.put(a.getSpotifyId(), a));
+
+        final List<WrappedTrack> tracks = new ArrayList<>(spotifyTracks.size());
+        for (final Track t : spotifyTracks) {
+            // unknown track ids come back empty too
+            if (t == null) {
+                continue;
+            }
+            final WrappedTrack track = new WrappedTrack(t);
+            final WrappedAudioFeatures a = audioFeatures.get(track.getSpotifyId());
+            if (a != null) {
+                a.applyTo(track);
+            }
+            tracks.add(track);
+        }
+        return tracks;
+    }
+
+    private static <T> T takeChunk(final BlockingQueue<T> finishedChunks) throws IOException {
+        try {
+            return finishedChunks.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting on track information", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SearchFetch<T> {
+        T fetch(String query) throws IOException, SpotifyWebApiException;
     }
 }
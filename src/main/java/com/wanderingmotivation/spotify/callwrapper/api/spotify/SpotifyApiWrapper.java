@@ -1,9 +1,9 @@
 package com.wanderingmotivation.spotify.callwrapper.api.spotify;
 
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
 import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.exceptions.detailed.UnauthorizedException;
-import com.wrapper.spotify.model_objects.credentials.ClientCredentials;
 import com.wrapper.spotify.model_objects.specification.Album;
 import com.wrapper.spotify.model_objects.specification.AlbumSimplified;
 import com.wrapper.spotify.model_objects.specification.Artist;
@@ -18,7 +18,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import static com.wanderingmotivation.spotify.callwrapper.util.ThrowingFunctionWrappers.throwingFunctionWrapper;
@@ -27,42 +30,81 @@ import static com.wanderingmotivation.spotify.callwrapper.util.ThrowingFunctionW
 @Slf4j
 public class SpotifyApiWrapper {
     private final SpotifyApi spotifyApi;
-    private final ClientCredentialsRequest clientCredentialsRequest;
+    private final SpotifyAccessTokenManager accessTokenManager;
+    private final SpotifyRequestScheduler requestScheduler;
+    private final SpotifyCallMetrics callMetrics;
 
     SpotifyApiWrapper(@Value("${spotify.client.id}") final String clientId,
-                      @Value("${spotify.client.secret}") final String clientSecret) {
+                      @Value("${spotify.client.secret}") final String clientSecret,
+                      @Value("${spotify.api.uri:https://api.spotify.com}") final URI apiUri,
+                      @Value("${spotify.auth.uri:https://accounts.spotify.com}") final URI authUri,
+                      @Value("${spotify.token.refresh-margin-seconds:300}") final long tokenRefreshMarginSeconds,
+                      final SpotifyRequestScheduler requestScheduler,
+                      final PooledHttpManager httpManager,
+                      final SpotifyCallMetrics callMetrics) {
+        this.requestScheduler = requestScheduler;
+        this.callMetrics = callMetrics;
         spotifyApi = SpotifyApi.builder()
                 .setClientId(clientId)
                 .setClientSecret(clientSecret)
+                .setHttpManager(httpManager)
+                .setScheme(apiUri.getScheme())
+                .setHost(apiUri.getHost())
+                .setPort(getPort(apiUri))
                 .build();
-        clientCredentialsRequest = spotifyApi.clientCredentials().build();
+        final ClientCredentialsRequest clientCredentialsRequest = spotifyApi.clientCredentials()
+                .setScheme(authUri.getScheme())
+                .setHost(authUri.getHost())
+                .setPort(getPort(authUri))
+                .build();
+        accessTokenManager = new SpotifyAccessTokenManager(spotifyApi, clientCredentialsRequest,
+                TimeUnit.SECONDS.toMillis(tokenRefreshMarginSeconds));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        accessTokenManager.shutdown();
     }
 
-    private void getAuthToken() throws IOException, SpotifyWebApiException {
-        final ClientCredentials credentials = clientCredentialsRequest.execute();
-        spotifyApi.setAccessToken(credentials.getAccessToken());
-        log.debug("Credentials expire in: " + credentials.getExpiresIn());
+    private static int getPort(final URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "http".equals(uri.getScheme()) ? 80 : 443;
     }
 
     /**
      * Wraps the getting of a Spotify Object from the API
-     * Mainly important to make sure a valid auth token exists and is available for requests
+     * Mainly important to make sure a valid auth token exists and is available for requests,
+     * and that the request goes through the rate limiting request scheduler
+     * @param operation upstream operation name the call's metrics are tagged with
      * @param id Argument for spotifyApiRequest below
      * @param spotifyApiRequest The request function to get a Spotify object
      * @return The object gotten from a spotifyApiRequest
      */
-    private <T, K, F extends Function<K, T>> T getSpotifyObjectFunction(final K id,
+    private <T, K, F extends Function<K, T>> T getSpotifyObjectFunction(final String operation,
+                                                                        final K id,
                                                                         final F spotifyApiRequest)
             throws SpotifyWebApiException, IOException {
+        return requestScheduler.schedule(() -> getSpotifyObjectWithAuth(operation, id, spotifyApiRequest));
+    }
+
+    private <T, K, F extends Function<K, T>> T getSpotifyObjectWithAuth(final String operation,
+                                                                        final K id,
+                                                                        final F spotifyApiRequest)
+            throws SpotifyWebApiException, IOException {
+        // tokens are normally refreshed ahead of time in the background, so this rarely blocks
+        final String accessToken = accessTokenManager.getAccessToken();
         T spotifyObject;
         try {
-            spotifyObject = spotifyApiRequest.apply(id);
+            spotifyObject = callMetrics.record(operation, () -> spotifyApiRequest.apply(id));
         } catch (final Exception e) {
-            if (e.getCause() instanceof UnauthorizedException) {
-                // this occurs when the access token doesn't exist or expires
+            if (SpotifyErrors.find(e, UnauthorizedException.class) != null) {
+                // this occurs when the access token was revoked early, concurrent failures share one refresh
                 log.debug("bad access token, getting a new one");
-                getAuthToken();
-                spotifyObject = spotifyApiRequest.apply(id);
+                accessTokenManager.refresh(accessToken);
+                RequestTrace.countRetry();
+                spotifyObject = callMetrics.record(operation, () -> spotifyApiRequest.apply(id));
             } else {
                 throw e;
             }
@@ -72,30 +114,30 @@ public class SpotifyApiWrapper {
 
     Paging<Artist> searchForArtist(final String search)
             throws SpotifyWebApiException, IOException {
-        return getSpotifyObjectFunction(search,
+        return getSpotifyObjectFunction("search-artists", search,
                 throwingFunctionWrapper(s -> spotifyApi.searchArtists(s).build().execute()));
     }
 
     Paging<AlbumSimplified> searchForAlbum(final String search)
             throws SpotifyWebApiException, IOException {
-        return getSpotifyObjectFunction(search,
+        return getSpotifyObjectFunction("search-albums", search,
                 throwingFunctionWrapper(s -> spotifyApi.searchAlbums(s).build().execute()));
     }
 
     Paging<PlaylistSimplified> searchForPlaylist(final String search)
             throws IOException, SpotifyWebApiException {
-        return getSpotifyObjectFunction(search,
+        return getSpotifyObjectFunction("search-playlists", search,
                 throwingFunctionWrapper(s -> spotifyApi.searchPlaylists(s).build().execute()));
     }
 
     Album[] getSpotifyAlbums(final String[] albumIds) throws IOException, SpotifyWebApiException {
-        return getSpotifyObjectFunction(albumIds,
+        return getSpotifyObjectFunction("several-albums", albumIds,
                 throwingFunctionWrapper(aids -> spotifyApi.getSeveralAlbums(aids).build().execute()));
     }
 
     Paging<AlbumSimplified> getSpotifyArtistsAlbums(final String artistId, final int offset)
             throws IOException, SpotifyWebApiException {
-        return getSpotifyObjectFunction(artistId,
+        return getSpotifyObjectFunction("artist-albums", artistId,
                 throwingFunctionWrapper(s ->
                         spotifyApi.getArtistsAlbums(s)
                                 .market(SpotifyApiConstants.US_MARKET)
@@ -108,7 +150,7 @@ public class SpotifyApiWrapper {
 
     Paging<PlaylistTrack> getSpotifyPlaylistTracks(final String playlistId, final int offset)
             throws IOException, SpotifyWebApiException {
-        return getSpotifyObjectFunction(playlistId,
+        return getSpotifyObjectFunction("playlist-tracks", playlistId,
                 throwingFunctionWrapper(p -> spotifyApi.getPlaylistsTracks(p)
                         .market(SpotifyApiConstants.US_MARKET)
                         .limit(SpotifyApiConstants.PLAYLIST_TRACK_PAGE_SIZE)
@@ -117,9 +159,21 @@ public class SpotifyApiWrapper {
                         .execute()));
     }
 
+    /**
+     * Asks for nothing but the playlist's snapshot id, which changes whenever the playlist is edited
+     */
+    String getSpotifyPlaylistSnapshotId(final String playlistId) throws IOException, SpotifyWebApiException {
+        return getSpotifyObjectFunction("playlist-snapshot", playlistId,
+                throwingFunctionWrapper(p -> spotifyApi.getPlaylist(p)
+                        .fields("snapshot_id")
+                        .build()
+                        .execute()
+                        .getSnapshotId()));
+    }
+
     Paging<TrackSimplified> getSpotifyAlbumTracks(final String albumId, final int offset)
             throws IOException, SpotifyWebApiException {
-        return getSpotifyObjectFunction(albumId, throwingFunctionWrapper(s ->
+        return getSpotifyObjectFunction("album-tracks", albumId, throwingFunctionWrapper(s ->
                 spotifyApi.getAlbumsTracks(s)
                         .market(SpotifyApiConstants.US_MARKET)
                         .limit(SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE)
@@ -129,12 +183,12 @@ public class SpotifyApiWrapper {
     }
 
     Track[] getSpotifyTracks(final String[] trackIds) throws IOException, SpotifyWebApiException {
-        return getSpotifyObjectFunction(trackIds,
+        return getSpotifyObjectFunction("several-tracks", trackIds,
                 throwingFunctionWrapper(ids -> spotifyApi.getSeveralTracks(ids).build().execute()));
     }
 
     AudioFeatures[] getSpotifyAudioFeatures(final String[] trackIds) throws IOException, SpotifyWebApiException {
-        return getSpotifyObjectFunction(trackIds,
+        return getSpotifyObjectFunction("audio-features", trackIds,
                 throwingFunctionWrapper(ids -> spotifyApi.getAudioFeaturesForSeveralTracks(ids).build().execute()));
     }
 }
@@ -0,0 +1,13 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+
+/**
+ * A unit of work against the Spotify API that can be handed off to a {@link SpotifyCallExecutor}
+ */
+@FunctionalInterface
+interface SpotifyCall<T> {
+    T call() throws IOException, SpotifyWebApiException;
+}
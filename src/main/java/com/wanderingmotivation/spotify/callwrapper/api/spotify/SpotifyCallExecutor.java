@@ -0,0 +1,149 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs Spotify calls on a bounded worker pool
+ * A parallelism of 1 or less runs every call inline on the caller's thread, i.e. the old sequential behavior.
+ * Calls submitted from one of the pool's own workers also run inline so nested fan-outs can't starve the pool.
+ */
+@Component
+@Slf4j
+class SpotifyCallExecutor {
+    private final ExecutorService executorService;
+    private final ThreadLocal<Boolean> onWorkerThread = ThreadLocal.withInitial(() -> false);
+
+    SpotifyCallExecutor(@Value("${spotify.concurrency.workers:8}") final int parallelism) {
+        if (parallelism > 1) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            executorService = Executors.newFixedThreadPool(parallelism, r -> {
+                final Thread thread = new Thread(() -> {
+                    onWorkerThread.set(true);
+                    r.run();
+                }, "spotify-call-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            executorService = null;
+        }
+        log.debug("spotify call parallelism: " + parallelism);
+    }
+
+    /**
+     * Schedules a call on the worker pool
+     * @param call the call to make
+     * @return future completed with the call's result, or exceptionally with whatever the call threw
+     */
+    <T> CompletableFuture<T> submit(final SpotifyCall<T> call) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        if (executorService == null || onWorkerThread.get()) {
+            complete(future, call);
+        } else {
+            final RequestTrace.Context traceContext = RequestTrace.capture();
+            executorService.execute(() -> {
+                // skip calls whose results nobody is waiting on anymore
+                if (!future.isDone()) {
+                    try (RequestTrace.Scope ignored = RequestTrace.enter(traceContext)) {
+                        complete(future, call);
+                    }
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * Makes all calls concurrently and waits for them
+     * If any call fails the remaining calls that haven't started yet are cancelled and the first failure is thrown
+     * @param calls calls to make
+     * @return results in the same order as the calls
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    <T> List<T> invokeAll(final List<SpotifyCall<T>> calls) throws IOException, SpotifyWebApiException {
+        final List<CompletableFuture<T>> futures = new ArrayList<>(calls.size());
+        for (final SpotifyCall<T> call : calls) {
+            futures.add(submit(call));
+        }
+
+        try {
+            final List<T> results = new ArrayList<>(futures.size());
+            for (final CompletableFuture<T> future : futures) {
+                results.add(await(future));
+            }
+            return results;
+        } finally {
+            // no-op for finished futures, keeps queued calls from running after a failure
+            futures.forEach(f -> f.cancel(false));
+        }
+    }
+
+    /**
+     * Waits on a future produced by this executor, rethrowing the original failure
+     * @param future future to wait on
+     * @return the future's result
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    static <T> T await(final CompletableFuture<T> future) throws IOException, SpotifyWebApiException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting on a Spotify call", e);
+        } catch (final ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Rethrows a failure from a call as the checked exception it started as
+     * Declared to return an exception so callers can write {@code throw rethrow(t)}
+     */
+    static RuntimeException rethrow(final Throwable throwable) throws IOException, SpotifyWebApiException {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+                throwable.getCause() :
+                throwable;
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof SpotifyWebApiException) {
+            throw (SpotifyWebApiException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static <T> void complete(final CompletableFuture<T> future, final SpotifyCall<T> call) {
+        try {
+            future.complete(call.call());
+        } catch (final Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import com.wrapper.spotify.exceptions.detailed.BadGatewayException;
+import com.wrapper.spotify.exceptions.detailed.BadRequestException;
+import com.wrapper.spotify.exceptions.detailed.ForbiddenException;
+import com.wrapper.spotify.exceptions.detailed.InternalServerErrorException;
+import com.wrapper.spotify.exceptions.detailed.NotFoundException;
+import com.wrapper.spotify.exceptions.detailed.ServiceUnavailableException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import com.wrapper.spotify.exceptions.detailed.UnauthorizedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Latency, outcome and in flight metrics for each call made to Spotify, tagged by operation
+ * Every attempt is recorded on its own, so a retried 429 or a 401 that needed a fresh token shows up as two calls
+ */
+@Component
+class SpotifyCallMetrics {
+    static final String REQUESTS = "spotify.api.requests";
+    static final String ERRORS = "spotify.api.errors";
+    static final String IN_FLIGHT = "spotify.api.requests.active";
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    // keyed by operation and status, so the hot path doesn't build and look up a meter on every call
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<List<String>, Counter> errorCounters = new ConcurrentHashMap<>();
+
+    SpotifyCallMetrics(final MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @param operation upstream operation name, e.g. several-tracks
+     * @param request makes the call, failing with a RuntimeException around the Spotify error
+     * @return the result of the request
+     */
+    <T> T record(final String operation, final Supplier<T> request) {
+        RequestTrace.countCall();
+        final AtomicInteger active = inFlight.computeIfAbsent(operation, this::registerInFlight);
+        active.incrementAndGet();
+        final long start = System.nanoTime();
+        String status = "200";
+        try {
+            return request.get();
+        } catch (final RuntimeException e) {
+            status = getStatus(e);
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            final List<String> key = Arrays.asList(operation, status);
+            timers.computeIfAbsent(key, this::registerTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            // failures without a status, like a dropped connection, never reached Spotify so they aren't counted here
+            if (!"200".equals(status) && !"error".equals(status)) {
+                errorCounters.computeIfAbsent(key, this::registerErrorCounter).increment();
+            }
+        }
+    }
+
+    private Timer registerTimer(final List<String> key) {
+        return Timer.builder(REQUESTS)
+                .description("calls made to Spotify")
+                .tag("operation", key.get(0))
+                .tag("status", key.get(1))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter registerErrorCounter(final List<String> key) {
+        return Counter.builder(ERRORS)
+                .description("calls Spotify answered with an error status")
+                .tag("operation", key.get(0))
+                .tag("status", key.get(1))
+                .register(registry);
+    }
+
+    private AtomicInteger registerInFlight(final String operation) {
+        final AtomicInteger active = new AtomicInteger();
+        Gauge.builder(IN_FLIGHT, active, AtomicInteger::get)
+                .description("calls to Spotify waiting on a response")
+                .tag("operation", operation)
+                .register(registry);
+        return active;
+    }
+
+    private static String getStatus(final RuntimeException e) {
+        final Throwable cause = SpotifyErrors.unwrap(e);
+        if (cause instanceof UnauthorizedException) {
+            return "401";
+        } else if (cause instanceof TooManyRequestsException) {
+            return "429";
+        } else if (cause instanceof InternalServerErrorException ||
+                cause instanceof BadGatewayException ||
+                cause instanceof ServiceUnavailableException) {
+            return "5xx";
+        } else if (cause instanceof BadRequestException ||
+                cause instanceof ForbiddenException ||
+                cause instanceof NotFoundException) {
+            return "4xx";
+        }
+        return "error";
+    }
+}
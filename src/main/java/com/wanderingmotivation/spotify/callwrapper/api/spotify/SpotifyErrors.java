@@ -0,0 +1,31 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+/**
+ * Finds the Spotify error behind a failed call
+ * Requests made through the library's function wrappers come back as RuntimeExceptions around the real error
+ * Class is explicitly final so no one subclasses it
+ */
+final class SpotifyErrors {
+    private SpotifyErrors() {
+    }
+
+    /**
+     * @param throwable a failure from a call, wrapped or not
+     * @return the error the call actually failed with
+     */
+    static Throwable unwrap(final Throwable throwable) {
+        return throwable instanceof RuntimeException && throwable.getCause() != null ?
+                throwable.getCause() :
+                throwable;
+    }
+
+    /**
+     * @param throwable a failure from a call, wrapped or not
+     * @param type error type to look for
+     * @return the error the call failed with if it's of that type, otherwise null
+     */
+    static <E extends Throwable> E find(final Throwable throwable, final Class<E> type) {
+        final Throwable cause = unwrap(throwable);
+        return type.isInstance(cause) ? type.cast(cause) : null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches every page of a paginated listing
+ * The first page gives the total, so every remaining offset is known up front and those pages are fetched
+ * concurrently on the spotify call executor, at most maxPagesInFlight at a time per listing.
+ */
+@Slf4j
+class SpotifyPaginator {
+    private final SpotifyCallExecutor spotifyCallExecutor;
+    private final int maxPagesInFlight;
+
+    SpotifyPaginator(final SpotifyCallExecutor spotifyCallExecutor, final int maxPagesInFlight) {
+        this.spotifyCallExecutor = spotifyCallExecutor;
+        this.maxPagesInFlight = Math.max(1, maxPagesInFlight);
+    }
+
+    /**
+     * @param name what's being listed, for logging
+     * @param pageFetcher fetches the page starting at an offset
+     * @param startOffset offset of the first page to fetch
+     * @param pageSize number of items the fetcher asks for per page
+     * @return the items of every page from startOffset on, in listing order
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    <T> List<T> fetchAll(final String name,
+                         final PageFetcher<T> pageFetcher,
+                         final int startOffset,
+                         final int pageSize) throws IOException, SpotifyWebApiException {
+        final Paging<T> firstPage = pageFetcher.fetch(startOffset);
+        final int total = firstPage.getTotal();
+        log.debug(String.format("getting %s %s to %s out of %s", name, startOffset, startOffset + pageSize, total));
+
+        final List<T> items = new ArrayList<>(Math.max(0, total - startOffset));
+        items.addAll(Arrays.asList(firstPage.getItems()));
+
+        final Deque<CompletableFuture<Paging<T>>> pendingPages = new ArrayDeque<>();
+        int nextOffset = startOffset + pageSize;
+        try {
+            while (nextOffset < total || !pendingPages.isEmpty()) {
+                if (nextOffset < total && pendingPages.size() < maxPagesInFlight) {
+                    final int offset = nextOffset;
+                    log.debug(String.format("getting %s %s to %s out of %s", name, offset, offset + pageSize, total));
+                    pendingPages.add(spotifyCallExecutor.submit(() -> pageFetcher.fetch(offset)));
+                    nextOffset += pageSize;
+                    continue;
+                }
+                items.addAll(Arrays.asList(SpotifyCallExecutor.await(pendingPages.remove()).getItems()));
+            }
+        } finally {
+            // only matters on failure, keeps the rest of the pages from going out
+            pendingPages.forEach(p -> p.cancel(false));
+        }
+        return items;
+    }
+
+    @FunctionalInterface
+    interface PageFetcher<T> {
+        Paging<T> fetch(int offset) throws IOException, SpotifyWebApiException;
+    }
+}
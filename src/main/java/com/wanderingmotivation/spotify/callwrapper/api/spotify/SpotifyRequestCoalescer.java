@@ -0,0 +1,72 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collapses identical concurrent requests into one
+ * The first caller for a key does the work, callers that show up while it's running wait for and share its result
+ * or failure. Nothing is kept once the work finishes, so this is not a cache.
+ * A caller whose work was interrupted, e.g. cancelled by its own request timeout, hands the work to one of the
+ * waiting callers instead of failing them all, since their own timeouts may not have run out yet.
+ */
+class SpotifyRequestCoalescer {
+    // completes the shared future when its work was interrupted, telling the waiting callers to try again
+    private static final Object ABANDONED = new Object();
+
+    private final ConcurrentMap<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param call the work to do if no identical request is already running
+     * @param key operation name and arguments identifying the request
+     * @return the result of the call, possibly computed for another caller
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    @SuppressWarnings("unchecked")
+    <T> T coalesce(final SpotifyCall<T> call, final Object... key) throws IOException, SpotifyWebApiException {
+        final List<Object> requestKey = Arrays.asList(key);
+        while (true) {
+            final CompletableFuture<Object> ours = new CompletableFuture<>();
+            final CompletableFuture<Object> running = inFlight.putIfAbsent(requestKey, ours);
+            if (running == null) {
+                return run(call, requestKey, ours);
+            }
+            final Object result = SpotifyCallExecutor.await(running);
+            if (result != ABANDONED) {
+                return (T) result;
+            }
+        }
+    }
+
+    private <T> T run(final SpotifyCall<T> call,
+                      final List<Object> requestKey,
+                      final CompletableFuture<Object> ours) throws IOException, SpotifyWebApiException {
+        try {
+            final T result = call.call();
+            ours.complete(result);
+            return result;
+        } catch (final Throwable t) {
+            // removed before waking the waiters, so the one that retries first becomes the new owner
+            inFlight.remove(requestKey, ours);
+            if (Thread.currentThread().isInterrupted()) {
+                ours.complete(ABANDONED);
+            } else {
+                ours.completeExceptionally(t);
+            }
+            throw t;
+        } finally {
+            inFlight.remove(requestKey, ours);
+        }
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+}
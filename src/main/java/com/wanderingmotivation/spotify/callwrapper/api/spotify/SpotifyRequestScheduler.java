@@ -0,0 +1,192 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gatekeeper for every request that goes out to Spotify
+ * Requests are paced by a token bucket, limited by an AIMD concurrency limit that halves on 429s and creeps back
+ * up on successes, and held back for the Retry-After period Spotify sends with a 429 before being retried.
+ */
+@Component
+@Slf4j
+class SpotifyRequestScheduler {
+    private final TokenBucket tokenBucket;
+    private final AimdConcurrencyLimit concurrencyLimit;
+    private final int maxRetries;
+    private volatile long pausedUntilNanos = System.nanoTime();
+
+    SpotifyRequestScheduler(@Value("${spotify.rate-limit.permits-per-second:10}") final double permitsPerSecond,
+                            @Value("${spotify.rate-limit.burst:10}") final int burst,
+                            @Value("${spotify.rate-limit.initial-concurrency:4}") final int initialConcurrency,
+                            @Value("${spotify.rate-limit.max-concurrency:16}") final int maxConcurrency,
+                            @Value("${spotify.rate-limit.max-retries:3}") final int maxRetries) {
+        this.tokenBucket = new TokenBucket(permitsPerSecond, burst);
+        if (!(permitsPerSecond > 0)) {
+            log.warn("spotify.rate-limit.permits-per-second is " + permitsPerSecond + ", requests won't be paced");
+        }
+        this.concurrencyLimit = new AimdConcurrencyLimit(initialConcurrency, maxConcurrency);
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Makes a request once it's allowed to go out, retrying it when Spotify says there have been too many requests
+     * @param request the request to make
+     * @return the request's result
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    <T> T schedule(final SpotifyCall<T> request) throws IOException, SpotifyWebApiException {
+        for (int attempt = 0; ; attempt++) {
+            waitForRetryAfter();
+            concurrencyLimit.acquire();
+            try {
+                tokenBucket.acquire();
+                final T result = request.call();
+                concurrencyLimit.onSuccess();
+                return result;
+            } catch (final IOException | SpotifyWebApiException | RuntimeException e) {
+                final TooManyRequestsException tooManyRequests = SpotifyErrors.find(e, TooManyRequestsException.class);
+                if (tooManyRequests == null) {
+                    throw e;
+                }
+                concurrencyLimit.onThrottled();
+                pauseFor(tooManyRequests.getRetryAfter());
+                log.debug(String.format("too many requests, retry after %ss, concurrency limit now %s",
+                        tooManyRequests.getRetryAfter(), concurrencyLimit.getLimit()));
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                RequestTrace.countRetry();
+            } finally {
+                concurrencyLimit.release();
+            }
+        }
+    }
+
+    int getConcurrencyLimit() {
+        return concurrencyLimit.getLimit();
+    }
+
+    private void pauseFor(final int retryAfterSeconds) {
+        final long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(0, retryAfterSeconds));
+        synchronized (this) {
+            if (until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+        }
+    }
+
+    private void waitForRetryAfter() throws IOException {
+        long waitNanos;
+        while ((waitNanos = pausedUntilNanos - System.nanoTime()) > 0) {
+            sleep(waitNanos);
+        }
+    }
+
+    private static void sleep(final long nanos) throws IOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting to make a Spotify request", e);
+        }
+    }
+
+    /**
+     * Classic token bucket, refilled continuously at permitsPerSecond up to burst tokens
+     * A rate of zero or less turns pacing off rather than never handing out another token once the burst is spent
+     */
+    static class TokenBucket {
+        private final boolean unlimited;
+        private final double permitsPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(final double permitsPerSecond, final int burst) {
+            // also catches NaN
+            this.unlimited = !(permitsPerSecond > 0);
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        void acquire() throws IOException {
+            long waitNanos;
+            while ((waitNanos = tryAcquire()) > 0) {
+                sleep(waitNanos);
+            }
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise roughly how long until one is available
+         */
+        private synchronized long tryAcquire() {
+            if (unlimited) {
+                return 0;
+            }
+            final long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) ((1 - tokens) / permitsPerNano));
+        }
+    }
+
+    /**
+     * Additive increase, multiplicative decrease limit on requests in flight
+     * Every success adds 1/limit so a full window of successes raises the limit by one, every 429 halves it
+     */
+    static class AimdConcurrencyLimit {
+        private final int maxLimit;
+        private double limit;
+        private int inFlight;
+
+        AimdConcurrencyLimit(final int initialLimit, final int maxLimit) {
+            this.maxLimit = Math.max(1, maxLimit);
+            this.limit = Math.min(this.maxLimit, Math.max(1, initialLimit));
+        }
+
+        synchronized void acquire() throws IOException {
+            try {
+                while (inFlight >= (int) limit) {
+                    wait();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting to make a Spotify request", e);
+            }
+            inFlight++;
+        }
+
+        synchronized void release() {
+            inFlight--;
+            notifyAll();
+        }
+
+        synchronized void onSuccess() {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+            notifyAll();
+        }
+
+        synchronized void onThrottled() {
+            limit = Math.max(1, limit / 2);
+        }
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+    }
+}
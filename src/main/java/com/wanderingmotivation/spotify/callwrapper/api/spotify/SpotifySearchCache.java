@@ -0,0 +1,180 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.cache.ExpiringLruCache;
+import com.wanderingmotivation.spotify.callwrapper.trace.RequestTrace;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Short lived cache of search results keyed by operation and case insensitive query
+ * Like SpotifyEntityCache, results are copied going in and coming out, so every caller gets its own list
+ * Results younger than the fresh TTL are served as is. Older ones are still served right away while a single
+ * background refresh replaces them, until they're past the stale TTL as well and have to be fetched inline again.
+ */
+@Component
+@Slf4j
+class SpotifySearchCache implements MeterBinder {
+    private static final Set<String> OPERATORS = new HashSet<>(Arrays.asList("AND", "OR", "NOT"));
+
+    private final ExpiringLruCache<List<String>, Result> results;
+    private final long freshMillis;
+    private final ExecutorService refresher;
+    private final Set<List<String>> refreshing = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SpotifySearchCache(@Value("${spotify.cache.search.max-size:5000}") final int maxSize,
+                       @Value("${spotify.cache.search.fresh-seconds:60}") final long freshSeconds,
+                       @Value("${spotify.cache.search.stale-seconds:600}") final long staleSeconds) {
+        this.freshMillis = TimeUnit.SECONDS.toMillis(freshSeconds);
+        this.results = new ExpiringLruCache<>(maxSize, freshMillis + TimeUnit.SECONDS.toMillis(staleSeconds));
+        this.refresher = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "spotify-search-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Trims the query and collapses whitespace, this is what gets sent to Spotify
+     * @param query raw search query
+     * @return normalized query
+     */
+    static String normalize(final String query) {
+        return query.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Lower cases the normalized query, so queries that only differ in case share one entry
+     * The AND, OR and NOT operators are only operators in upper case, so they're left alone
+     * @param query raw search query
+     * @return cache key for the query
+     */
+    static String cacheKey(final String query) {
+        return Arrays.stream(normalize(query).split(" "))
+                .map(word -> OPERATORS.contains(word) ? word : word.toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * @param call fetches the results when they're missing or need refreshing
+     * @param operation search operation name
+     * @param query search query, entries are shared by queries with the same cache key
+     * @param copier copies one result, so callers never share a mutable result with the cache or each other
+     * @return an unmodifiable copy of the cached results when there are any, otherwise of the result of the call
+     * @throws IOException
+     * @throws SpotifyWebApiException Thrown when there is some Spotify error, e.g. TooManyRequestsException
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> get(final SpotifyCall<List<T>> call,
+                    final String operation,
+                    final String query,
+                    final UnaryOperator<T> copier) throws IOException, SpotifyWebApiException {
+        final List<String> key = Arrays.asList(operation, cacheKey(query));
+        final Result cached = results.get(key);
+        if (cached != null) {
+            RequestTrace.countCacheHits(1);
+            if (System.currentTimeMillis() - cached.fetchedAtMillis < freshMillis) {
+                hits.incrementAndGet();
+            } else {
+                staleHits.incrementAndGet();
+                refreshInBackground(key, call, copier);
+            }
+            return copy((List<T>) cached.value, copier);
+        }
+
+        misses.incrementAndGet();
+        // coalesced callers all get this same list back from the call, so each one copies it
+        final List<T> value = call.call();
+        results.put(key, new Result(copy(value, copier)));
+        return copy(value, copier);
+    }
+
+    private <T> void refreshInBackground(final List<String> key,
+                                         final SpotifyCall<List<T>> call,
+                                         final UnaryOperator<T> copier) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                results.put(key, new Result(copy(call.call(), copier)));
+            } catch (final IOException | SpotifyWebApiException | RuntimeException e) {
+                // the stale result keeps being served until it expires or a later refresh works
+                log.warn("failed to refresh search results for " + key, e);
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    private static <T> List<T> copy(final List<T> values, final UnaryOperator<T> copier) {
+        return Collections.unmodifiableList(values.stream()
+                .map(copier)
+                .collect(Collectors.toList()));
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("spotify.search.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("searches answered from the cache")
+                .register(registry);
+        FunctionCounter.builder("spotify.search.cache.requests", staleHits, AtomicLong::get)
+                .tag("result", "stale")
+                .description("searches answered from the cache while refreshing in the background")
+                .register(registry);
+        FunctionCounter.builder("spotify.search.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("searches that had to wait on Spotify")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private static class Result {
+        private final Object value;
+        private final long fetchedAtMillis = System.currentTimeMillis();
+
+        private Result(final Object value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.model_objects.specification.AudioFeatures;
+import com.wrapper.spotify.model_objects.specification.Track;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batches track and audio feature lookups from all in-flight requests into full several-tracks calls
+ */
+@Component
+class SpotifyTrackBatcher {
+    private final ScheduledExecutorService timer;
+    private final ExecutorService dispatcher;
+    private final LookupBatcher<Track> trackBatcher;
+    private final LookupBatcher<AudioFeatures> audioFeaturesBatcher;
+
+    SpotifyTrackBatcher(final SpotifyApiWrapper spotifyApiWrapper,
+                        @Value("${spotify.batching.linger-millis:5}") final long lingerMillis,
+                        @Value("${spotify.batching.max-concurrent-batches:8}") final int maxConcurrentBatches) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "spotify-batch-timer"));
+        dispatcher = Executors.newFixedThreadPool(Math.max(1, maxConcurrentBatches),
+                r -> daemon(r, "spotify-batch-" + threadCount.incrementAndGet()));
+
+        trackBatcher = new LookupBatcher<>("tracks", spotifyApiWrapper::getSpotifyTracks,
+                SpotifyApiConstants.TRACK_PAGE_SIZE, lingerMillis, timer, dispatcher);
+        audioFeaturesBatcher = new LookupBatcher<>("audio features", spotifyApiWrapper::getSpotifyAudioFeatures,
+                SpotifyApiConstants.TRACK_PAGE_SIZE, lingerMillis, timer, dispatcher);
+    }
+
+    /**
+     * @param trackIds Spotify track ids
+     * @return future of the tracks in the same order as the ids, null for unknown ids
+     */
+    CompletableFuture<List<Track>> getTracks(final List<String> trackIds) {
+        return trackBatcher.lookup(trackIds);
+    }
+
+    /**
+     * @param trackIds Spotify track ids
+     * @return future of the audio features in the same order as the ids, null for tracks without them
+     */
+    CompletableFuture<List<AudioFeatures>> getAudioFeatures(final List<String> trackIds) {
+        return audioFeaturesBatcher.lookup(trackIds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    private static Thread daemon(final Runnable r, final String name) {
+        final Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
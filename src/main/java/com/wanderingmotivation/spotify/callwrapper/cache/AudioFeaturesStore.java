@@ -0,0 +1,209 @@
+package com.wanderingmotivation.spotify.callwrapper.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedAudioFeatures;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent store of audio features keyed by track id
+ * Backed by an append-only file with one JSON record per line. The file is read back in the background at startup,
+ * lookups made before that finishes just miss. An empty file path keeps everything in memory.
+ * Only the most recently used features are held in memory, the rest stay in the file and are read back on restart.
+ * Reading the file and appending to it both happen on one writer thread, so callers never wait on disk.
+ */
+@Component
+@Slf4j
+public class AudioFeaturesStore {
+    private static final Gson GSON = new Gson();
+
+    private final Path storeFile;
+    private final ExpiringLruCache<String, WrappedAudioFeatures> audioFeatures;
+    private final ExecutorService writerThread;
+    private final Object putLock = new Object();
+    private volatile boolean loaded;
+    // ids read from the file, only used on the writer thread and dropped once writes queued during the load are done
+    private Set<String> fileIds;
+    private BufferedWriter writer;
+
+    public AudioFeaturesStore(@Value("${spotify.audio-features.store-file:}") final String storeFile,
+                              @Value("${spotify.audio-features.max-size:200000}") final int maxSize) {
+        this.audioFeatures = new ExpiringLruCache<>(maxSize, Long.MAX_VALUE);
+        if (storeFile == null || storeFile.isEmpty()) {
+            this.storeFile = null;
+            this.writerThread = null;
+            this.loaded = true;
+        } else {
+            this.storeFile = Paths.get(storeFile);
+            this.writerThread = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "audio-features-store-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writerThread.execute(this::load);
+        }
+    }
+
+    /**
+     * @param trackIds track ids to look up
+     * @return map of the track ids that were found to their audio features
+     */
+    public Map<String, WrappedAudioFeatures> getAll(final Collection<String> trackIds) {
+        return audioFeatures.getAll(trackIds);
+    }
+
+    /**
+     * Stores audio features, queueing the ones that weren't known yet to be appended to the store file
+     * Failing to write is logged and otherwise ignored, the features are still kept in memory
+     * Features evicted from memory and fetched again get appended again, loading keeps the first record of each
+     * @param newAudioFeatures audio features to store
+     */
+    public void putAll(final Collection<WrappedAudioFeatures> newAudioFeatures) {
+        synchronized (putLock) {
+            final List<WrappedAudioFeatures> unknown = new ArrayList<>();
+            for (final WrappedAudioFeatures features : newAudioFeatures) {
+                if (audioFeatures.get(features.getSpotifyId()) == null) {
+                    audioFeatures.put(features.getSpotifyId(), features);
+                    unknown.add(features);
+                }
+            }
+            if (writerThread != null && !unknown.isEmpty()) {
+                writerThread.execute(() -> append(unknown));
+            }
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return audioFeatures.size();
+    }
+
+    /**
+     * Lets queued appends finish before closing the store file
+     */
+    @PreDestroy
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        writerThread.shutdown();
+        try {
+            if (!writerThread.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("gave up waiting on appends to audio features store " + storeFile);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (final IOException e) {
+                log.warn("couldn't close audio features store " + storeFile, e);
+            }
+            writer = null;
+        }
+    }
+
+    private void append(final List<WrappedAudioFeatures> newAudioFeatures) {
+        final StringBuilder records = new StringBuilder();
+        for (final WrappedAudioFeatures features : newAudioFeatures) {
+            if (fileIds == null || !fileIds.contains(features.getSpotifyId())) {
+                records.append(GSON.toJson(features)).append('\n');
+            }
+        }
+        if (records.length() == 0) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                if (storeFile.getParent() != null) {
+                    Files.createDirectories(storeFile.getParent());
+                }
+                final boolean endsMidRecord = endsMidRecord();
+                writer = Files.newBufferedWriter(storeFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (endsMidRecord) {
+                    // don't glue new records onto one cut off by a crash
+                    writer.write('\n');
+                }
+            }
+            writer.write(records.toString());
+            writer.flush();
+        } catch (final IOException e) {
+            log.warn("couldn't append to audio features store " + storeFile, e);
+        }
+    }
+
+    private boolean endsMidRecord() throws IOException {
+        if (!Files.exists(storeFile) || Files.size(storeFile) == 0) {
+            return false;
+        }
+        try (final RandomAccessFile file = new RandomAccessFile(storeFile.toFile(), "r")) {
+            file.seek(file.length() - 1);
+            return file.read() != '\n';
+        }
+    }
+
+    private void load() {
+        final long startTime = System.currentTimeMillis();
+        final Set<String> ids = new HashSet<>();
+        int skipped = 0;
+        if (Files.exists(storeFile)) {
+            try (final BufferedReader reader = Files.newBufferedReader(storeFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        final WrappedAudioFeatures features = GSON.fromJson(line, WrappedAudioFeatures.class);
+                        if (features != null && features.getSpotifyId() != null
+                                && ids.add(features.getSpotifyId())) {
+                            synchronized (putLock) {
+                                if (audioFeatures.get(features.getSpotifyId()) == null) {
+                                    audioFeatures.put(features.getSpotifyId(), features);
+                                }
+                            }
+                        }
+                    } catch (final JsonParseException e) {
+                        // most likely a record cut off by a crash mid-write
+                        skipped++;
+                    }
+                }
+            } catch (final IOException e) {
+                log.warn("couldn't load audio features store " + storeFile, e);
+            }
+        }
+        fileIds = ids;
+        synchronized (putLock) {
+            // features put from now on were checked against everything in the file, so once the writes queued
+            // while loading are done the file ids aren't needed anymore
+            loaded = true;
+            writerThread.execute(() -> fileIds = null);
+        }
+        log.info(String.format("loaded %s audio features from %s in %sms, skipped %s bad records",
+                ids.size(), storeFile, System.currentTimeMillis() - startTime, skipped));
+    }
+}
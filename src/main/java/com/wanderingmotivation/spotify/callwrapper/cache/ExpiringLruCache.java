@@ -0,0 +1,96 @@
+package com.wanderingmotivation.spotify.callwrapper.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A size bounded, least recently used cache whose entries also expire a fixed time after they're written
+ * Mutable values can be given a copier, values are then copied going in and coming out so callers never share one
+ */
+public class ExpiringLruCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public ExpiringLruCache(final int maxSize, final long ttlMillis) {
+        this(maxSize, ttlMillis, UnaryOperator.identity());
+    }
+
+    public ExpiringLruCache(final int maxSize, final long ttlMillis, final UnaryOperator<V> copier) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.copier = copier;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringLruCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key key to look up
+     * @return the cached value, or null if it's missing or expired
+     */
+    public synchronized V get(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            entries.remove(key);
+            return null;
+        }
+        return copier.apply(entry.value);
+    }
+
+    /**
+     * @param keys keys to look up
+     * @return map of the keys that were found to their cached values
+     */
+    public synchronized Map<K, V> getAll(final Collection<K> keys) {
+        final Map<K, V> found = new HashMap<>();
+        for (final K key : keys) {
+            final V value = get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    public synchronized void put(final K key, final V value) {
+        if (maxSize > 0) {
+            final long now = System.currentTimeMillis();
+            // a TTL of Long.MAX_VALUE never expires instead of overflowing into the past
+            final long expiresAtMillis = ttlMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttlMillis;
+            entries.put(key, new Entry<>(copier.apply(value), expiresAtMillis));
+        }
+    }
+
+    public synchronized void invalidate(final K key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAtMillis;
+
+        private Entry(final V value, final long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAtMillis;
+        }
+    }
+}
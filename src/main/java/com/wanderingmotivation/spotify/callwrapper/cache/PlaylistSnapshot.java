@@ -0,0 +1,19 @@
+package com.wanderingmotivation.spotify.callwrapper.cache;
+
+import com.wanderingmotivation.spotify.callwrapper.model.TrackBatch;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The assembled tracks of a playlist as of one of its snapshots
+ * Spotify only changes a playlist's snapshot id when the playlist is edited, so the tracks stay good for as long as
+ * the snapshot id does.
+ */
+@Data
+@AllArgsConstructor
+public class PlaylistSnapshot {
+    private final String snapshotId;
+    private final TrackBatch tracks;
+    private final boolean includesAudioFeatures;
+    private volatile long checkedAtMillis;
+}
@@ -0,0 +1,47 @@
+package com.wanderingmotivation.spotify.callwrapper.cache;
+
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedAlbum;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedTrack;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In memory caches of wrapped Spotify entities keyed by Spotify id, each with its own size bound and TTL
+ * Tracks and albums are copied in and out of their caches, so one caller filling in a track can't change another's
+ * The discography cache holds the last album id to track ids snapshot seen for each artist id
+ * The playlist cache holds each playlist's tracks along with the snapshot id they were assembled for, and the
+ * snapshot id is only checked again once it's older than playlistSnapshotCheckMillis
+ */
+@Component
+@Getter
+public class SpotifyEntityCache {
+    private final ExpiringLruCache<String, WrappedTrack> trackCache;
+    private final ExpiringLruCache<String, WrappedAlbum> albumCache;
+    private final ExpiringLruCache<String, Map<String, List<String>>> discographyCache;
+    private final ExpiringLruCache<String, PlaylistSnapshot> playlistCache;
+    private final long playlistSnapshotCheckMillis;
+
+    public SpotifyEntityCache(@Value("${spotify.cache.track.max-size:50000}") final int trackMaxSize,
+                              @Value("${spotify.cache.track.ttl-seconds:86400}") final long trackTtlSeconds,
+                              @Value("${spotify.cache.album.max-size:10000}") final int albumMaxSize,
+                              @Value("${spotify.cache.album.ttl-seconds:86400}") final long albumTtlSeconds,
+                              @Value("${spotify.cache.discography.max-size:2000}") final int discographyMaxSize,
+                              @Value("${spotify.cache.discography.ttl-seconds:604800}") final long discographyTtlSeconds,
+                              @Value("${spotify.cache.playlist.max-size:500}") final int playlistMaxSize,
+                              @Value("${spotify.cache.playlist.ttl-seconds:86400}") final long playlistTtlSeconds,
+                              @Value("${spotify.cache.playlist.snapshot-check-seconds:30}") final long playlistCheckSeconds) {
+        this.trackCache = new ExpiringLruCache<>(trackMaxSize, TimeUnit.SECONDS.toMillis(trackTtlSeconds),
+                WrappedTrack::new);
+        this.albumCache = new ExpiringLruCache<>(albumMaxSize, TimeUnit.SECONDS.toMillis(albumTtlSeconds),
+                WrappedAlbum::new);
+        this.discographyCache = new ExpiringLruCache<>(discographyMaxSize,
+                TimeUnit.SECONDS.toMillis(discographyTtlSeconds));
+        this.playlistCache = new ExpiringLruCache<>(playlistMaxSize, TimeUnit.SECONDS.toMillis(playlistTtlSeconds));
+        this.playlistSnapshotCheckMillis = TimeUnit.SECONDS.toMillis(playlistCheckSeconds);
+    }
+}
@@ -0,0 +1,356 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A columnar, primitive backed set of tracks for large results
+ * Holds the same information as a map of track id to WrappedTrack and serializes to the same JSON, but without an
+ * object per track: album and artist ids are dictionary encoded, every audio feature is its own primitive array and
+ * a bitmap marks the tracks that have audio features. Other missing numbers are kept as NaN or MISSING_INT.
+ * Tracks are only ever appended, from one thread at a time.
+ */
+@JsonSerialize(using = TrackBatch.Serializer.class)
+public class TrackBatch {
+    static final int MISSING_INT = Integer.MIN_VALUE;
+
+    private final TrackFields fields;
+    private final Columns columns;
+
+    /**
+     * @param expectedSize number of tracks to make room for up front, more can still be added
+     */
+    public TrackBatch(final int expectedSize) {
+        this(TrackFields.ALL, new Columns(Math.max(1, expectedSize)));
+    }
+
+    private TrackBatch(final TrackFields fields, final Columns columns) {
+        this.fields = fields;
+        this.columns = columns;
+    }
+
+    /**
+     * @param fields fields to serialize
+     * @return a view of the same tracks that serializes only those fields
+     */
+    public TrackBatch withFields(final TrackFields fields) {
+        return new TrackBatch(fields, columns);
+    }
+
+    public TrackFields getFields() {
+        return fields;
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    public String getSpotifyId(final int index) {
+        return columns.spotifyIds[index];
+    }
+
+    /**
+     * Appends a track, copying its values into the columns so the track itself can be dropped
+     * @param track track to add
+     */
+    public void add(final WrappedTrack track) {
+        columns.add(track);
+    }
+
+    /**
+     * Builds the WrappedTrack for one position, for callers that need an object rather than serialized output
+     * @param index position of the track
+     * @return the track with every field filled in
+     */
+    public WrappedTrack getTrack(final int index) {
+        final Columns c = columns;
+        final WrappedTrack track = new WrappedTrack();
+        track.setName(c.names[index]);
+        track.setSpotifyId(c.spotifyIds[index]);
+        track.setArtistIds(c.getArtistIds(index));
+        track.setAlbumId(c.albumIds[index] == MISSING_INT ? null : c.albumIdDictionary.get(c.albumIds[index]));
+        track.setPopularity(boxed(c.popularity[index]));
+        track.setTrackNumber(boxed(c.trackNumbers[index]));
+        if (c.hasAudioFeatures.get(index)) {
+            track.setDanceability(boxed(c.danceability[index]));
+            track.setEnergy(boxed(c.energy[index]));
+            track.setKey(boxed(c.key[index]));
+            track.setLoudness(boxed(c.loudness[index]));
+            track.setMode(boxed(c.mode[index]));
+            track.setSpeechiness(boxed(c.speechiness[index]));
+            track.setAcousticness(boxed(c.acousticness[index]));
+            track.setInstrumentalness(boxed(c.instrumentalness[index]));
+            track.setLiveness(boxed(c.liveness[index]));
+            track.setValence(boxed(c.valence[index]));
+            track.setTempo(boxed(c.tempo[index]));
+            track.setDurationMs(boxed(c.durationMs[index]));
+            track.setTimeSignature(boxed(c.timeSignature[index]));
+        }
+        return track;
+    }
+
+    private static Integer boxed(final int value) {
+        return value == MISSING_INT ? null : value;
+    }
+
+    private static Float boxed(final float value) {
+        return Float.isNaN(value) ? null : value;
+    }
+
+    private static final class Columns {
+        private int size;
+        private String[] spotifyIds;
+        private String[] names;
+        private int[] albumIds;
+        private int[] artistOffsets;
+        private int[] artistIds;
+        private int[] popularity;
+        private int[] trackNumbers;
+        private final BitSet hasAudioFeatures = new BitSet();
+        private float[] danceability;
+        private float[] energy;
+        private int[] key;
+        private float[] loudness;
+        private int[] mode;
+        private float[] speechiness;
+        private float[] acousticness;
+        private float[] instrumentalness;
+        private float[] liveness;
+        private float[] valence;
+        private float[] tempo;
+        private int[] durationMs;
+        private int[] timeSignature;
+
+        private final List<String> albumIdDictionary = new ArrayList<>();
+        private final Map<String, Integer> albumIdIndexes = new HashMap<>();
+        private final List<String> artistIdDictionary = new ArrayList<>();
+        private final Map<String, Integer> artistIdIndexes = new HashMap<>();
+        private int artistIdCount;
+
+        private Columns(final int capacity) {
+            spotifyIds = new String[capacity];
+            names = new String[capacity];
+            albumIds = new int[capacity];
+            artistOffsets = new int[capacity + 1];
+            // most tracks have a single artist
+            artistIds = new int[capacity];
+            popularity = new int[capacity];
+            trackNumbers = new int[capacity];
+            danceability = new float[capacity];
+            energy = new float[capacity];
+            key = new int[capacity];
+            loudness = new float[capacity];
+            mode = new int[capacity];
+            speechiness = new float[capacity];
+            acousticness = new float[capacity];
+            instrumentalness = new float[capacity];
+            liveness = new float[capacity];
+            valence = new float[capacity];
+            tempo = new float[capacity];
+            durationMs = new int[capacity];
+            timeSignature = new int[capacity];
+        }
+
+        private void add(final WrappedTrack track) {
+            if (size == spotifyIds.length) {
+                grow(size * 2);
+            }
+            final int i = size;
+            spotifyIds[i] = track.getSpotifyId();
+            names[i] = track.getName();
+            albumIds[i] = track.getAlbumId() == null ?
+                    MISSING_INT :
+                    encode(track.getAlbumId(), albumIdDictionary, albumIdIndexes);
+            popularity[i] = unboxed(track.getPopularity());
+            trackNumbers[i] = unboxed(track.getTrackNumber());
+
+            final List<String> trackArtistIds = track.getArtistIds() == null ?
+                    new ArrayList<>() :
+                    track.getArtistIds();
+            final int neededArtistIds = artistIdCount + trackArtistIds.size();
+            if (neededArtistIds > artistIds.length) {
+                artistIds = Arrays.copyOf(artistIds, Math.max(artistIds.length * 2, neededArtistIds));
+            }
+            for (final String artistId : trackArtistIds) {
+                artistIds[artistIdCount++] = encode(artistId, artistIdDictionary, artistIdIndexes);
+            }
+            artistOffsets[i + 1] = artistIdCount;
+
+            if (hasAudioFeatures(track)) {
+                hasAudioFeatures.set(i);
+                danceability[i] = unboxed(track.getDanceability());
+                energy[i] = unboxed(track.getEnergy());
+                key[i] = unboxed(track.getKey());
+                loudness[i] = unboxed(track.getLoudness());
+                mode[i] = unboxed(track.getMode());
+                speechiness[i] = unboxed(track.getSpeechiness());
+                acousticness[i] = unboxed(track.getAcousticness());
+                instrumentalness[i] = unboxed(track.getInstrumentalness());
+                liveness[i] = unboxed(track.getLiveness());
+                valence[i] = unboxed(track.getValence());
+                tempo[i] = unboxed(track.getTempo());
+                durationMs[i] = unboxed(track.getDurationMs());
+                timeSignature[i] = unboxed(track.getTimeSignature());
+            }
+            size++;
+        }
+
+        private static boolean hasAudioFeatures(final WrappedTrack track) {
+            return track.getDanceability() != null || track.getEnergy() != null || track.getKey() != null ||
+                    track.getLoudness() != null || track.getMode() != null || track.getSpeechiness() != null ||
+                    track.getAcousticness() != null || track.getInstrumentalness() != null ||
+                    track.getLiveness() != null || track.getValence() != null || track.getTempo() != null ||
+                    track.getDurationMs() != null || track.getTimeSignature() != null;
+        }
+
+        private List<String> getArtistIds(final int index) {
+            final List<String> ids = new ArrayList<>(artistOffsets[index + 1] - artistOffsets[index]);
+            for (int a = artistOffsets[index]; a < artistOffsets[index + 1]; a++) {
+                ids.add(artistIdDictionary.get(artistIds[a]));
+            }
+            return ids;
+        }
+
+        private void grow(final int capacity) {
+            spotifyIds = Arrays.copyOf(spotifyIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            albumIds = Arrays.copyOf(albumIds, capacity);
+            artistOffsets = Arrays.copyOf(artistOffsets, capacity + 1);
+            popularity = Arrays.copyOf(popularity, capacity);
+            trackNumbers = Arrays.copyOf(trackNumbers, capacity);
+            danceability = Arrays.copyOf(danceability, capacity);
+            energy = Arrays.copyOf(energy, capacity);
+            key = Arrays.copyOf(key, capacity);
+            loudness = Arrays.copyOf(loudness, capacity);
+            mode = Arrays.copyOf(mode, capacity);
+            speechiness = Arrays.copyOf(speechiness, capacity);
+            acousticness = Arrays.copyOf(acousticness, capacity);
+            instrumentalness = Arrays.copyOf(instrumentalness, capacity);
+            liveness = Arrays.copyOf(liveness, capacity);
+            valence = Arrays.copyOf(valence, capacity);
+            tempo = Arrays.copyOf(tempo, capacity);
+            durationMs = Arrays.copyOf(durationMs, capacity);
+            timeSignature = Arrays.copyOf(timeSignature, capacity);
+        }
+
+        private static int encode(final String id, final List<String> dictionary, final Map<String, Integer> indexes) {
+            final Integer index = indexes.get(id);
+            if (index != null) {
+                return index;
+            }
+            dictionary.add(id);
+            indexes.put(id, dictionary.size() - 1);
+            return dictionary.size() - 1;
+        }
+
+        private static int unboxed(final Integer value) {
+            return value == null ? MISSING_INT : value;
+        }
+
+        private static float unboxed(final Float value) {
+            return value == null ? Float.NaN : value;
+        }
+    }
+
+    /**
+     * Writes the batch as an object of track id to track, in the same shape and field order WrappedTrack would be
+     * written in, reading straight from the columns
+     */
+    public static class Serializer extends StdSerializer<TrackBatch> {
+        public Serializer() {
+            super(TrackBatch.class);
+        }
+
+        @Override
+        public void serialize(final TrackBatch batch, final JsonGenerator gen, final SerializerProvider provider)
+                throws IOException {
+            final TrackFields f = batch.fields;
+            final Columns c = batch.columns;
+
+            gen.writeStartObject();
+            for (int i = 0; i < c.size; i++) {
+                gen.writeFieldName(c.spotifyIds[i]);
+                gen.writeStartObject();
+                if (f.includes("name")) {
+                    writeString(gen, "name", c.names[i]);
+                }
+                if (f.includes("spotifyId")) {
+                    writeString(gen, "spotifyId", c.spotifyIds[i]);
+                }
+                if (f.includes("artistIds")) {
+                    gen.writeArrayFieldStart("artistIds");
+                    for (int a = c.artistOffsets[i]; a < c.artistOffsets[i + 1]; a++) {
+                        gen.writeString(c.artistIdDictionary.get(c.artistIds[a]));
+                    }
+                    gen.writeEndArray();
+                }
+                if (f.includes("albumId")) {
+                    writeString(gen, "albumId",
+                            c.albumIds[i] == MISSING_INT ? null : c.albumIdDictionary.get(c.albumIds[i]));
+                }
+                writeInt(gen, f, "popularity", c.popularity[i]);
+                writeInt(gen, f, "trackNumber", c.trackNumbers[i]);
+
+                final boolean features = c.hasAudioFeatures.get(i);
+                writeFloat(gen, f, "danceability", features ? c.danceability[i] : Float.NaN);
+                writeFloat(gen, f, "energy", features ? c.energy[i] : Float.NaN);
+                writeInt(gen, f, "key", features ? c.key[i] : MISSING_INT);
+                writeFloat(gen, f, "loudness", features ? c.loudness[i] : Float.NaN);
+                writeInt(gen, f, "mode", features ? c.mode[i] : MISSING_INT);
+                writeFloat(gen, f, "speechiness", features ? c.speechiness[i] : Float.NaN);
+                writeFloat(gen, f, "acousticness", features ? c.acousticness[i] : Float.NaN);
+                writeFloat(gen, f, "instrumentalness", features ? c.instrumentalness[i] : Float.NaN);
+                writeFloat(gen, f, "liveness", features ? c.liveness[i] : Float.NaN);
+                writeFloat(gen, f, "valence", features ? c.valence[i] : Float.NaN);
+                writeFloat(gen, f, "tempo", features ? c.tempo[i] : Float.NaN);
+                writeInt(gen, f, "durationMs", features ? c.durationMs[i] : MISSING_INT);
+                writeInt(gen, f, "timeSignature", features ? c.timeSignature[i] : MISSING_INT);
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+
+        private static void writeString(final JsonGenerator gen, final String name, final String value)
+                throws IOException {
+            if (value == null) {
+                gen.writeNullField(name);
+            } else {
+                gen.writeStringField(name, value);
+            }
+        }
+
+        private static void writeInt(final JsonGenerator gen, final TrackFields fields, final String name,
+                                     final int value) throws IOException {
+            if (!fields.includes(name)) {
+                return;
+            }
+            if (value == MISSING_INT) {
+                gen.writeNullField(name);
+            } else {
+                gen.writeNumberField(name, value);
+            }
+        }
+
+        private static void writeFloat(final JsonGenerator gen, final TrackFields fields, final String name,
+                                       final float value) throws IOException {
+            if (!fields.includes(name)) {
+                return;
+            }
+            if (Float.isNaN(value)) {
+                gen.writeNullField(name);
+            } else {
+                gen.writeNumberField(name, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.wanderingmotivation.spotify.callwrapper.util.InvalidRequestException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The WrappedTrack fields a caller asked for
+ * Decides both which properties get serialized and whether audio features have to be fetched at all
+ */
+public class TrackFields {
+    public static final TrackFields ALL = new TrackFields(null);
+
+    /**
+     * WrappedTrack properties that are filled in from audio features rather than the track itself
+     */
+    public static final Set<String> AUDIO_FEATURE_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "danceability", "energy", "key", "loudness", "mode", "speechiness", "acousticness",
+            "instrumentalness", "liveness", "valence", "tempo", "durationMs", "timeSignature")));
+
+    /**
+     * Every WrappedTrack property a caller can ask for
+     */
+    public static final Set<String> KNOWN_FIELDS = Collections.unmodifiableSet(Stream.concat(
+            Stream.of("name", "spotifyId", "artistIds", "albumId", "popularity", "trackNumber"),
+            AUDIO_FEATURE_FIELDS.stream()).collect(Collectors.toSet()));
+
+    private final SortedSet<String> names;
+
+    private TrackFields(final SortedSet<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * @param fields comma separated WrappedTrack property names, null or blank for all of them
+     * @return the requested fields, kept sorted so the same fields in any order make the same cache keys and ETags
+     * @throws InvalidRequestException Thrown when a name isn't a WrappedTrack property
+     */
+    public static TrackFields parse(final String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        final SortedSet<String> names = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+        for (final String name : names) {
+            if (!KNOWN_FIELDS.contains(name)) {
+                throw new InvalidRequestException("unknown track field " + name);
+            }
+        }
+        return new TrackFields(names);
+    }
+
+    public boolean includesAll() {
+        return names == null;
+    }
+
+    public boolean includes(final String name) {
+        return includesAll() || names.contains(name);
+    }
+
+    public boolean includesAudioFeatures() {
+        return includesAll() || names.stream().anyMatch(AUDIO_FEATURE_FIELDS::contains);
+    }
+
+    /**
+     * @return filters for serializing WrappedTracks with only these fields
+     */
+    public FilterProvider toFilterProvider() {
+        return new SimpleFilterProvider().addFilter(WrappedTrack.FIELD_FILTER, includesAll() ?
+                SimpleBeanPropertyFilter.serializeAll() :
+                SimpleBeanPropertyFilter.filterOutAllExcept(names));
+    }
+
+    @Override
+    public String toString() {
+        return includesAll() ? "all" : String.join(",", names);
+    }
+}
@@ -0,0 +1,16 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Artists and tracks to look up together in one batch, either list may be left out
+ */
+@Data
+@NoArgsConstructor
+public class TrackLookup {
+    private List<String> artistIds;
+    private List<String> trackIds;
+}
@@ -0,0 +1,18 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * A batch lookup's tracks split back up per requested entity
+ * Each artist gets the same tracks getArtistTracks would return for it, and the requested track ids that exist are
+ * keyed by id in tracks.
+ */
+@Data
+@AllArgsConstructor
+public class TrackLookupResult {
+    private Map<String, TrackBatch> artists;
+    private TrackBatch tracks;
+}
@@ -1,14 +1,19 @@
 package com.wanderingmotivation.spotify.callwrapper.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.wrapper.spotify.model_objects.specification.Album;
 import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
 import com.wrapper.spotify.model_objects.specification.Image;
+import com.wrapper.spotify.model_objects.specification.Paging;
 import com.wrapper.spotify.model_objects.specification.TrackSimplified;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -25,8 +30,18 @@ public class WrappedAlbum {
     private int popularity;
     private List<String> imageUrls;
     private List<String> trackIds;
+    /**
+     * Track count including the ones past the embedded first page, only used to decide whether to page for the rest
+     */
+    @JsonIgnore
+    private int totalTracks;
     private String releaseDate;
     private String releaseDatePrecision;
+    /**
+     * Artist ids of the embedded tracks by track id, so tracks by other artists can be dropped before hydrating them
+     */
+    @JsonIgnore
+    private Map<String, List<String>> trackArtistIds;
 
     public WrappedAlbum(final Album album) {
         this.spotifyId = album.getId();
@@ -43,8 +58,41 @@ public class WrappedAlbum {
         this.popularity = album.getPopularity();
         this.releaseDate = album.getReleaseDate();
         this.releaseDatePrecision = album.getReleaseDatePrecision().toString();
-        this.trackIds = Arrays.stream(album.getTracks().getItems())
+        // the album only embeds the first page of its tracks, totalTracks says whether there are more
+        final Paging<TrackSimplified> tracks = album.getTracks();
+        this.trackIds = Arrays.stream(tracks.getItems())
                 .map(TrackSimplified::getId)
                 .collect(Collectors.toList());
+        this.totalTracks = tracks.getTotal() != null ? tracks.getTotal() : trackIds.size();
+        this.trackArtistIds = new LinkedHashMap<>();
+        for (final TrackSimplified track : tracks.getItems()) {
+            if (track.getArtists() != null) {
+                trackArtistIds.put(track.getId(), Arrays.stream(track.getArtists())
+                        .map(ArtistSimplified::getId)
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    /**
+     * Copies an album, lists included, so a cached album can be handed out without callers sharing it
+     */
+    public WrappedAlbum(final WrappedAlbum album) {
+        this(album.spotifyId,
+                copy(album.artistIds),
+                album.albumType,
+                copy(album.genres),
+                album.name,
+                album.popularity,
+                copy(album.imageUrls),
+                copy(album.trackIds),
+                album.totalTracks,
+                album.releaseDate,
+                album.releaseDatePrecision,
+                album.trackArtistIds != null ? new LinkedHashMap<>(album.trackArtistIds) : null);
+    }
+
+    private static List<String> copy(final List<String> list) {
+        return list != null ? new ArrayList<>(list) : null;
     }
 }
@@ -5,6 +5,7 @@ import com.wrapper.spotify.model_objects.specification.Image;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -32,4 +33,19 @@ public class WrappedArtist {
                         .collect(Collectors.toList()) :
                 null;
     }
+
+    /**
+     * Copies an artist, lists included, so a cached artist can be handed out without callers sharing it
+     */
+    public WrappedArtist(final WrappedArtist artist) {
+        this(artist.spotifyId,
+                copy(artist.genres),
+                artist.name,
+                artist.popularity,
+                copy(artist.imageUrls));
+    }
+
+    private static List<String> copy(final List<String> list) {
+        return list != null ? new ArrayList<>(list) : null;
+    }
 }
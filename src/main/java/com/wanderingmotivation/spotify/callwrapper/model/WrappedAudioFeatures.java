@@ -0,0 +1,65 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.wrapper.spotify.model_objects.specification.AudioFeatures;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A simplified model for a track's audio features
+ * These never change for a track id, so they're safe to keep around indefinitely
+ */
+@Data
+@AllArgsConstructor
+public class WrappedAudioFeatures {
+    private String spotifyId;
+    private Float danceability;
+    private Float energy;
+    private Integer key;
+    private Float loudness;
+    private Integer mode;
+    private Float speechiness;
+    private Float acousticness;
+    private Float instrumentalness;
+    private Float liveness;
+    private Float valence;
+    private Float tempo;
+    private Integer durationMs;
+    private Integer timeSignature;
+
+    public WrappedAudioFeatures(final AudioFeatures audioFeatures) {
+        this.spotifyId = audioFeatures.getId();
+        this.danceability = audioFeatures.getDanceability();
+        this.energy = audioFeatures.getEnergy();
+        this.key = audioFeatures.getKey();
+        this.loudness = audioFeatures.getLoudness();
+        this.mode = audioFeatures.getMode().getType();
+        this.speechiness = audioFeatures.getSpeechiness();
+        this.acousticness = audioFeatures.getAcousticness();
+        this.instrumentalness = audioFeatures.getInstrumentalness();
+        this.liveness = audioFeatures.getLiveness();
+        this.valence = audioFeatures.getValence();
+        this.tempo = audioFeatures.getTempo();
+        this.durationMs = audioFeatures.getDurationMs();
+        this.timeSignature = audioFeatures.getTimeSignature();
+    }
+
+    /**
+     * Copies these features onto a track
+     * @param track track to fill in
+     */
+    public void applyTo(final WrappedTrack track) {
+        track.setDanceability(danceability);
+        track.setEnergy(energy);
+        track.setKey(key);
+        track.setLoudness(loudness);
+        track.setMode(mode);
+        track.setSpeechiness(speechiness);
+        track.setAcousticness(acousticness);
+        track.setInstrumentalness(instrumentalness);
+        track.setLiveness(liveness);
+        track.setValence(valence);
+        track.setTempo(tempo);
+        track.setDurationMs(durationMs);
+        track.setTimeSignature(timeSignature);
+    }
+}
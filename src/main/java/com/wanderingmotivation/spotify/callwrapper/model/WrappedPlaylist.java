@@ -5,6 +5,7 @@ import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -25,4 +26,14 @@ public class WrappedPlaylist {
                 .map(Image::getUrl)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Copies a playlist, image urls included, so a cached playlist can be handed out without callers sharing it
+     */
+    public WrappedPlaylist(final WrappedPlaylist playlist) {
+        this(playlist.spotifyId,
+                playlist.userId,
+                playlist.name,
+                playlist.imageUrls != null ? new ArrayList<>(playlist.imageUrls) : null);
+    }
 }
@@ -1,19 +1,27 @@
 package com.wanderingmotivation.spotify.callwrapper.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
 import com.wrapper.spotify.model_objects.specification.AudioFeatures;
 import com.wrapper.spotify.model_objects.specification.Track;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * A combination of track information and its related audio features
+ * Serialized through the field filter so responses can be trimmed to the TrackFields a caller asked for
  */
 @Data
+@NoArgsConstructor
+@JsonFilter(WrappedTrack.FIELD_FILTER)
 public class WrappedTrack {
+    public static final String FIELD_FILTER = "wrappedTrackFields";
+
     private String name;
     private String spotifyId;
     private List<String> artistIds;
@@ -39,6 +47,31 @@ public class WrappedTrack {
         setTrackProperties(track);
     }
 
+    /**
+     * Copies a track, so a cached track can be handed out without callers sharing it
+     */
+    public WrappedTrack(final WrappedTrack track) {
+        name = track.name;
+        spotifyId = track.spotifyId;
+        artistIds = track.artistIds != null ? new ArrayList<>(track.artistIds) : null;
+        albumId = track.albumId;
+        popularity = track.popularity;
+        trackNumber = track.trackNumber;
+        danceability = track.danceability;
+        energy = track.energy;
+        key = track.key;
+        loudness = track.loudness;
+        mode = track.mode;
+        speechiness = track.speechiness;
+        acousticness = track.acousticness;
+        instrumentalness = track.instrumentalness;
+        liveness = track.liveness;
+        valence = track.valence;
+        tempo = track.tempo;
+        durationMs = track.durationMs;
+        timeSignature = track.timeSignature;
+    }
+
     public WrappedTrack(final AudioFeatures audioFeatures) {
         super();
         setAudioFeatures(audioFeatures);
@@ -56,18 +89,6 @@ public class WrappedTrack {
     }
 
     public void setAudioFeatures(final AudioFeatures audioFeatures) {
-        danceability = audioFeatures.getDanceability();
-        energy = audioFeatures.getEnergy();
-        key = audioFeatures.getKey();
-        loudness = audioFeatures.getLoudness();
-        mode = audioFeatures.getMode().getType();
-        speechiness = audioFeatures.getSpeechiness();
-        acousticness = audioFeatures.getAcousticness();
-        instrumentalness = audioFeatures.getInstrumentalness();
-        liveness = audioFeatures.getLiveness();
-        valence = audioFeatures.getValence();
-        tempo = audioFeatures.getTempo();
-        durationMs = audioFeatures.getDurationMs();
-        timeSignature = audioFeatures.getTimeSignature();
+        new WrappedAudioFeatures(audioFeatures).applyTo(this);
     }
 }
@@ -0,0 +1,177 @@
+package com.wanderingmotivation.spotify.callwrapper.trace;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per request breakdown of where time went, by stage: wall time, upstream calls, retries and cache hits
+ * The trace follows the request through a thread local, which the call executor and the lookup batchers carry over
+ * to the threads they hand work to. Without a current trace every method here is a no-op, so code paths that aren't
+ * serving a request (background refreshes, tests) don't need to know about tracing.
+ */
+public class RequestTrace {
+    /**
+     * Request attribute the service keeps the trace under until the response is written
+     */
+    public static final String ATTRIBUTE = RequestTrace.class.getName();
+
+    private static final String DEFAULT_STAGE = "other";
+    private static final ThreadLocal<Context> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    /**
+     * @return the context of the request the current thread is working for, null when there isn't one
+     */
+    public static Context capture() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes a captured context current on this thread until the returned scope is closed
+     * @param context context from capture, may be null
+     * @return scope restoring whatever context this thread had before
+     */
+    public static Scope enter(final Context context) {
+        final Context previous = CURRENT.get();
+        CURRENT.set(context);
+        return () -> CURRENT.set(previous);
+    }
+
+    /**
+     * Starts a stage of the current request, adding the time until the returned scope is closed to its wall time
+     * Calls, retries and cache hits on this thread and on work handed off from it count towards the stage meanwhile
+     * @param name stage name, used as the Server-Timing metric name
+     * @return scope ending the stage
+     */
+    public static Scope stage(final String name) {
+        final Context previous = CURRENT.get();
+        if (previous == null) {
+            return () -> { };
+        }
+        final long stageStartNanos = System.nanoTime();
+        final Stage stage = previous.trace.getStage(name);
+        CURRENT.set(new Context(previous.trace, name));
+        return () -> {
+            stage.wallNanos.addAndGet(System.nanoTime() - stageStartNanos);
+            CURRENT.set(previous);
+        };
+    }
+
+    public static void countCall() {
+        final Stage stage = currentStage();
+        if (stage != null) {
+            stage.calls.incrementAndGet();
+        }
+    }
+
+    public static void countRetry() {
+        final Stage stage = currentStage();
+        if (stage != null) {
+            stage.retries.incrementAndGet();
+        }
+    }
+
+    public static void countCacheHits(final int hits) {
+        final Stage stage = currentStage();
+        if (stage != null && hits > 0) {
+            stage.cacheHits.addAndGet(hits);
+        }
+    }
+
+    private static Stage currentStage() {
+        final Context context = CURRENT.get();
+        return context != null ? context.trace.getStage(context.stage) : null;
+    }
+
+    /**
+     * @return context for running request work under this trace, outside of any stage
+     */
+    public Context context() {
+        return new Context(this, DEFAULT_STAGE);
+    }
+
+    private synchronized Stage getStage(final String name) {
+        return stages.computeIfAbsent(name, n -> new Stage());
+    }
+
+    private synchronized List<Map.Entry<String, Stage>> getStages() {
+        return new ArrayList<>(stages.entrySet());
+    }
+
+    private long getTotalNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return Server-Timing header value with one metric per stage plus the total
+     */
+    public String toServerTiming() {
+        final StringBuilder serverTiming = new StringBuilder();
+        for (final Map.Entry<String, Stage> entry : getStages()) {
+            final Stage stage = entry.getValue();
+            serverTiming.append(String.format(Locale.ROOT, "%s;dur=%.1f;desc=\"calls=%d retries=%d cache-hits=%d\", ",
+                    entry.getKey(), toMillis(stage.wallNanos.get()), stage.calls.get(), stage.retries.get(),
+                    stage.cacheHits.get()));
+        }
+        serverTiming.append(String.format(Locale.ROOT, "total;dur=%.1f", toMillis(getTotalNanos())));
+        return serverTiming.toString();
+    }
+
+    /**
+     * @return the same breakdown as the Server-Timing header, for the debug envelope
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> stageMaps = new LinkedHashMap<>();
+        for (final Map.Entry<String, Stage> entry : getStages()) {
+            final Stage stage = entry.getValue();
+            final Map<String, Object> stageMap = new LinkedHashMap<>();
+            stageMap.put("wallMillis", toMillis(stage.wallNanos.get()));
+            stageMap.put("calls", stage.calls.get());
+            stageMap.put("retries", stage.retries.get());
+            stageMap.put("cacheHits", stage.cacheHits.get());
+            stageMaps.put(entry.getKey(), stageMap);
+        }
+        final Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("totalMillis", toMillis(getTotalNanos()));
+        trace.put("stages", stageMaps);
+        return trace;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * A trace and the stage work is currently counted towards
+     */
+    public static final class Context {
+        private final RequestTrace trace;
+        private final String stage;
+
+        private Context(final RequestTrace trace, final String stage) {
+            this.trace = trace;
+            this.stage = stage;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class Stage {
+        private final AtomicLong wallNanos = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger retries = new AtomicInteger();
+        private final AtomicInteger cacheHits = new AtomicInteger();
+    }
+}
@@ -0,0 +1,14 @@
+package com.wanderingmotivation.spotify.callwrapper.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown for requests the caller got wrong, answered with a 400 before anything goes out to Spotify
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidRequestException extends IllegalArgumentException {
+    public InvalidRequestException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.wanderingmotivation.spotify.callwrapper.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown for requests that ran past the service's request timeout, their work is cancelled rather than left running
+ * Answered with a 504, so a slow request can be told apart from the 503 for a full service queue
+ */
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class RequestTimeoutException extends RuntimeException {
+    public RequestTimeoutException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,6 @@
+package com.wanderingmotivation.spotify.callwrapper.util;
+
+@FunctionalInterface
+public interface ThrowingConsumer<T, E extends Exception> {
+    void accept(T t) throws E;
+}
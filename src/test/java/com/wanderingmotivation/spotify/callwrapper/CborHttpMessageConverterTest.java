@@ -0,0 +1,119 @@
+package com.wanderingmotivation.spotify.callwrapper;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackBatch;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackFields;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedArtist;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedTrack;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CborHttpMessageConverterTest {
+    private static final Type TRACK_MAP = new TypeReference<Map<String, WrappedTrack>>() { }.getType();
+    private static final Type ARTIST_LIST = new TypeReference<List<WrappedArtist>>() { }.getType();
+
+    private MappingJackson2HttpMessageConverter jsonConverter;
+    private CborHttpMessageConverter cborConverter;
+
+    @BeforeEach
+    void initialize() {
+        final Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .filters(TrackFields.ALL.toFilterProvider());
+        jsonConverter = new MappingJackson2HttpMessageConverter(builder.build());
+        final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        builder.configure(cborMapper);
+        cborConverter = new CborHttpMessageConverter(cborMapper);
+    }
+
+    @Test
+    @DisplayName("Track batches round trip through both JSON and CBOR, and CBOR is smaller")
+    void tracksRoundTrip() throws IOException {
+        final Map<String, WrappedTrack> tracks = buildTracks(200);
+        final TrackBatch batch = new TrackBatch(tracks.size());
+        tracks.values().forEach(batch::add);
+
+        final byte[] json = write(jsonConverter, batch, MediaType.APPLICATION_JSON);
+        final byte[] cbor = write(cborConverter, batch, CborHttpMessageConverter.APPLICATION_CBOR);
+
+        assertEquals(tracks, read(jsonConverter, json, TRACK_MAP));
+        assertEquals(tracks, read(cborConverter, cbor, TRACK_MAP));
+        assertTrue(cbor.length < json.length);
+    }
+
+    @Test
+    @DisplayName("Search results round trip through both JSON and CBOR")
+    void searchResultsRoundTrip() throws IOException {
+        final List<WrappedArtist> artists = Lists.newArrayList(
+                new WrappedArtist("artist-1", Lists.newArrayList("genre 1", "genre 2"), "artist name", 50, null),
+                new WrappedArtist("artist-2", Lists.newArrayList(), "other name", 0, null));
+
+        assertEquals(artists, read(jsonConverter,
+                write(jsonConverter, artists, MediaType.APPLICATION_JSON), ARTIST_LIST));
+        assertEquals(artists, read(cborConverter,
+                write(cborConverter, artists, CborHttpMessageConverter.APPLICATION_CBOR), ARTIST_LIST));
+    }
+
+    private static byte[] write(final AbstractJackson2HttpMessageConverter converter,
+                                final Object value,
+                                final MediaType mediaType) throws IOException {
+        final MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        converter.write(value, value.getClass(), mediaType, outputMessage);
+        return outputMessage.getBodyAsBytes();
+    }
+
+    private static Object read(final AbstractJackson2HttpMessageConverter converter,
+                               final byte[] body,
+                               final Type type) throws IOException {
+        return converter.read(type, null, new MockHttpInputMessage(body));
+    }
+
+    private static Map<String, WrappedTrack> buildTracks(final int count) {
+        final Map<String, WrappedTrack> tracks = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            final WrappedTrack track = new WrappedTrack();
+            track.setName("name " + i);
+            track.setSpotifyId("track-" + i);
+            track.setArtistIds(Lists.newArrayList("artist-" + i % 7));
+            track.setAlbumId("album-" + i % 12);
+            track.setPopularity(i % 100);
+            track.setTrackNumber(i % 12 + 1);
+            // every fifth track has no audio features
+            if (i % 5 != 0) {
+                track.setDanceability(i / 200f);
+                track.setEnergy(0.3f);
+                track.setKey(i % 12);
+                track.setLoudness(-7.25f);
+                track.setMode(i % 2);
+                track.setSpeechiness(0.05f);
+                track.setAcousticness(0.6f);
+                track.setInstrumentalness(0.001f);
+                track.setLiveness(0.2f);
+                track.setValence(0.45f);
+                track.setTempo(100f + i);
+                track.setDurationMs(180000 + i);
+                track.setTimeSignature(4);
+            }
+            tracks.put(track.getSpotifyId(), track);
+        }
+        return tracks;
+    }
+}
@@ -0,0 +1,49 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.exceptions.detailed.BadRequestException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LookupBatcherTest {
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("A rejected batch only fails the callers of the bad id")
+    void isolatesRejectedIds() throws InterruptedException, ExecutionException {
+        final AtomicInteger calls = new AtomicInteger();
+        final LookupBatcher<String> batcher = new LookupBatcher<>("things", ids -> {
+            calls.incrementAndGet();
+            if (Arrays.asList(ids).contains("bad")) {
+                throw new RuntimeException(new BadRequestException("invalid id"));
+            }
+            return Arrays.stream(ids).map(id -> "found " + id).toArray(String[]::new);
+        }, 4, 1000, timer, Runnable::run);
+
+        final CompletableFuture<List<String>> good = batcher.lookup(Arrays.asList("a", "b"));
+        final CompletableFuture<List<String>> bad = batcher.lookup(Arrays.asList("c", "bad"));
+
+        assertEquals(Arrays.asList("found a", "found b"), good.get());
+        final ExecutionException failure = assertThrows(ExecutionException.class, bad::get);
+        assertTrue(SpotifyErrors.find(failure.getCause(), BadRequestException.class) != null);
+        // the batch of four, then halves of two, then the rejected half one id at a time
+        assertEquals(5, calls.get());
+    }
+}
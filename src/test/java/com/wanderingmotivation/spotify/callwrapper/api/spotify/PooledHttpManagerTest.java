@@ -0,0 +1,121 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.NotFoundException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledHttpManagerTest {
+    private HttpServer server;
+    private PooledHttpManager httpManager;
+
+    @BeforeEach
+    void initialize() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ok", exchange -> respond(exchange, 200, "{\"ok\":true}"));
+        server.createContext("/missing", exchange ->
+                respond(exchange, 404, "{\"error\":{\"status\":404,\"message\":\"non existing id\"}}"));
+        server.createContext("/throttled", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "3");
+            respond(exchange, 429, "");
+        });
+        server.createContext("/throttled-until", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After",
+                    DateUtils.formatDate(new Date(System.currentTimeMillis() + 5000)));
+            respond(exchange, 429, "");
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(500);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "{}");
+        });
+        server.start();
+
+        httpManager = new PooledHttpManager(4, 2, 1000, 200, 1000, 30000);
+    }
+
+    @AfterEach
+    void shutdown() throws IOException {
+        httpManager.close();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Sequential requests reuse one kept-alive connection")
+    void reusesConnections() throws IOException, SpotifyWebApiException {
+        for (int i = 0; i < 5; i++) {
+            assertEquals("{\"ok\":true}", httpManager.get(uri("/ok"), null));
+        }
+
+        assertEquals(0, httpManager.getPoolStats().getLeased());
+        assertEquals(1, httpManager.getPoolStats().getAvailable());
+    }
+
+    @Test
+    @DisplayName("Error responses map to the library's exceptions")
+    void mapsErrors() {
+        final NotFoundException notFound =
+                assertThrows(NotFoundException.class, () -> httpManager.get(uri("/missing"), null));
+        assertEquals("non existing id", notFound.getMessage());
+
+        final TooManyRequestsException tooManyRequests =
+                assertThrows(TooManyRequestsException.class, () -> httpManager.get(uri("/throttled"), null));
+        assertEquals(3, tooManyRequests.getRetryAfter());
+
+        // error responses still hand their connection back
+        assertEquals(0, httpManager.getPoolStats().getLeased());
+    }
+
+    @Test
+    @DisplayName("Retry-After is read as an HTTP-date too, and defaults to a second when unreadable")
+    void readsRetryAfterDates() {
+        final TooManyRequestsException tooManyRequests =
+                assertThrows(TooManyRequestsException.class, () -> httpManager.get(uri("/throttled-until"), null));
+        assertTrue(tooManyRequests.getRetryAfter() >= 4 && tooManyRequests.getRetryAfter() <= 6);
+
+        assertEquals(1, PooledHttpManager.getRetryAfterSeconds(new BasicHeader("Retry-After", "soon")));
+        assertEquals(0, PooledHttpManager.getRetryAfterSeconds(
+                new BasicHeader("Retry-After", DateUtils.formatDate(new Date(0)))));
+    }
+
+    @Test
+    @DisplayName("Reads time out")
+    void readTimeout() {
+        assertThrows(SocketTimeoutException.class, () -> httpManager.get(uri("/slow"), null));
+    }
+
+    private URI uri(final String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -1,18 +1,29 @@
 package com.wanderingmotivation.spotify.callwrapper.api.spotify;
 
+import com.wanderingmotivation.spotify.callwrapper.cache.AudioFeaturesStore;
+import com.wanderingmotivation.spotify.callwrapper.cache.SpotifyEntityCache;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackBatch;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackFields;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackLookupResult;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedAlbum;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedArtist;
 import com.wanderingmotivation.spotify.callwrapper.model.WrappedPlaylist;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedTrack;
 import com.wrapper.spotify.enums.AlbumType;
+import com.wrapper.spotify.enums.Modality;
 import com.wrapper.spotify.enums.ReleaseDatePrecision;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
 import com.wrapper.spotify.model_objects.specification.Album;
 import com.wrapper.spotify.model_objects.specification.AlbumSimplified;
 import com.wrapper.spotify.model_objects.specification.Artist;
 import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
+import com.wrapper.spotify.model_objects.specification.AudioFeatures;
 import com.wrapper.spotify.model_objects.specification.Image;
 import com.wrapper.spotify.model_objects.specification.Paging;
 import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.model_objects.specification.Track;
 import com.wrapper.spotify.model_objects.specification.TrackSimplified;
 import com.wrapper.spotify.model_objects.specification.User;
 import org.apache.commons.collections4.ListUtils;
@@ -24,13 +35,23 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.times;
@@ -60,6 +81,17 @@ class SpotifyApiDataAccessorTest {
         assertEquals(expectedArtists, spotifyApiDataAccessor.searchForArtist(testSearchTerm));
     }
 
+    @Test
+    @DisplayName("Search operators reach Spotify in their original case")
+    void searchForArtistKeepsOperators() throws IOException, SpotifyWebApiException {
+        final List<WrappedArtist> expectedArtists = buildWrappedArtistList(3);
+        final Paging<Artist> mockArtistPage = buildArtistPage(3);
+        when(mockSpotifyApiWrapper.searchForArtist("Daft NOT Punk")).thenReturn(mockArtistPage);
+
+        assertEquals(expectedArtists, spotifyApiDataAccessor.searchForArtist("  Daft  NOT Punk "));
+        verify(mockSpotifyApiWrapper).searchForArtist("Daft NOT Punk");
+    }
+
     @Test
     @DisplayName("Base search for album test")
     void searchForAlbum() throws IOException, SpotifyWebApiException {
@@ -90,15 +122,54 @@ class SpotifyApiDataAccessorTest {
     }
 
     @Test
-    @DisplayName("Base get many albums test without pagination")
-    void getManyAlbums() throws IOException, SpotifyWebApiException {
+    @DisplayName("Concurrent identical searches share one Spotify call")
+    void searchForArtistCoalesced() throws IOException, SpotifyWebApiException, InterruptedException {
+        final int testCount = 10;
+        final String testSearchTerm = "search";
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Paging<Artist> mockArtistPage = buildArtistPage(testCount);
+        when(mockSpotifyApiWrapper.searchForArtist(testSearchTerm)).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            release.await();
+            return mockArtistPage;
+        });
+
+        final List<List<WrappedArtist>> results = Collections.synchronizedList(new ArrayList<>());
+        final Runnable search = () -> {
+            try {
+                results.add(spotifyApiDataAccessor.searchForArtist(testSearchTerm));
+            } catch (final IOException | SpotifyWebApiException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        final Thread first = new Thread(search);
+        final Thread second = new Thread(search);
+        first.start();
+        while (calls.get() == 0) {
+            Thread.sleep(5);
+        }
+        second.start();
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(1, calls.get());
+        assertEquals(2, results.size());
+        assertEquals(buildWrappedArtistList(testCount), results.get(0));
+        assertEquals(results.get(0), results.get(1));
+    }
+
+    @Test
+    @DisplayName("Base get artist track ids test without pagination")
+    void getArtistTrackIds() throws IOException, SpotifyWebApiException {
         final String testArtist = "test artist";
         final int testCount = 15;
 
-        final List<WrappedAlbum> wrappedAlbums = buildWrappedAlbumList(testCount);
-        final Map<String, WrappedAlbum> expectedAlbums = wrappedAlbums.stream()
-                .collect(Collectors.toMap(WrappedAlbum::getSpotifyId, a -> a));
-
         final Paging<AlbumSimplified> albumPage = buildSimplifiedAlbumPage(testCount, 0);
         when(mockSpotifyApiWrapper.getSpotifyArtistsAlbums(testArtist, 0)).thenReturn(albumPage);
 
@@ -106,24 +177,21 @@ class SpotifyApiDataAccessorTest {
         final Album[] spotifyAlbums = buildAlbums(testCount, 0);
         when(mockSpotifyApiWrapper.getSpotifyAlbums(albumIds)).thenReturn(spotifyAlbums);
 
-        final Map<String, WrappedAlbum> returnedAlbums = spotifyApiDataAccessor.getManyAlbums(testArtist);
+        final List<String> returnedTrackIds = spotifyApiDataAccessor.getArtistTrackIds(testArtist);
 
         verify(mockSpotifyApiWrapper, times(1)).getSpotifyArtistsAlbums(any(String.class), anyInt());
         verify(mockSpotifyApiWrapper, times(1)).getSpotifyAlbums(any(String[].class));
+        verify(mockSpotifyApiWrapper, times(0)).getSpotifyAlbumTracks(any(String.class), anyInt());
 
-        assertEquals(expectedAlbums, returnedAlbums);
+        assertEquals(Arrays.asList(buildIdsArray(testCount, "track ")), returnedTrackIds);
     }
 
     @Test
-    @DisplayName("Get many albums test with pagination")
-    void getManyAlbumsWithPagination() throws IOException, SpotifyWebApiException {
+    @DisplayName("Get artist track ids test with album listing pagination and album chunks")
+    void getArtistTrackIdsWithPagination() throws IOException, SpotifyWebApiException {
         final String testArtist = "test artist with pagination";
         final int testCount = 65;
 
-        final List<WrappedAlbum> wrappedAlbums = buildWrappedAlbumList(testCount);
-        final Map<String, WrappedAlbum> expectedAlbums = wrappedAlbums.stream()
-                .collect(Collectors.toMap(WrappedAlbum::getSpotifyId, a -> a));
-
         final Paging<AlbumSimplified> albumPage0 = buildSimplifiedAlbumPage(testCount, 0);
         final Paging<AlbumSimplified> albumPage1 =
                 buildSimplifiedAlbumPage(testCount, SpotifyApiConstants.ARTIST_ALBUM_PAGE_SIZE);
@@ -144,57 +212,421 @@ class SpotifyApiDataAccessorTest {
         when(mockSpotifyApiWrapper.getSpotifyAlbums(albumIds2)).thenReturn(spotifyAlbums2);
         when(mockSpotifyApiWrapper.getSpotifyAlbums(albumIds3)).thenReturn(spotifyAlbums3);
 
-        final Map<String, WrappedAlbum> returnedAlbums = spotifyApiDataAccessor.getManyAlbums(testArtist);
+        final List<String> returnedTrackIds = spotifyApiDataAccessor.getArtistTrackIds(testArtist);
 
         verify(mockSpotifyApiWrapper, times(2)).getSpotifyArtistsAlbums(any(String.class), anyInt());
         verify(mockSpotifyApiWrapper, times(4)).getSpotifyAlbums(any(String[].class));
 
-        assertEquals(expectedAlbums, returnedAlbums);
+        assertEquals(Arrays.asList(buildIdsArray(testCount, "track ")), returnedTrackIds);
     }
 
     @Test
-    @DisplayName("Base get album tracks test one album without pagination")
-    void getAlbumTracks() throws IOException, SpotifyWebApiException {
-        final String testAlbum = "test album";
-        final int testCount = 30;
+    @DisplayName("Get artist track ids only hydrates albums that are new since the last snapshot")
+    void getArtistTrackIdsIncrementally() throws IOException, SpotifyWebApiException {
+        // album cache off so only the discography snapshot can save album calls
+        final SpotifyEntityCache cache = new SpotifyEntityCache(0, 0, 0, 0, 100, 60, 0, 0, 0);
+        spotifyApiDataAccessor = buildAccessor(new SpotifyCallExecutor(1), cache, memoryStore(), 1);
+
+        final String testArtist = "test artist";
+        final int firstCount = 10;
+        final int secondCount = 12;
+        when(mockSpotifyApiWrapper.getSpotifyArtistsAlbums(testArtist, 0))
+                .thenReturn(buildSimplifiedAlbumPage(firstCount, 0))
+                .thenReturn(buildSimplifiedAlbumPage(secondCount, 0));
+        final String[] firstAlbumIds = buildIdsArray(0, firstCount);
+        final String[] newAlbumIds = buildIdsArray(firstCount, secondCount - firstCount);
+        when(mockSpotifyApiWrapper.getSpotifyAlbums(firstAlbumIds)).thenReturn(buildAlbums(firstCount, 0));
+        when(mockSpotifyApiWrapper.getSpotifyAlbums(newAlbumIds)).thenReturn(buildAlbums(secondCount, firstCount));
+
+        final List<String> firstTrackIds = spotifyApiDataAccessor.getArtistTrackIds(testArtist);
+        final List<String> secondTrackIds = spotifyApiDataAccessor.getArtistTrackIds(testArtist);
+
+        verify(mockSpotifyApiWrapper, times(2)).getSpotifyArtistsAlbums(any(String.class), anyInt());
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyAlbums(firstAlbumIds);
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyAlbums(newAlbumIds);
 
-        final List<String> expectedTrackIds = Arrays.asList(buildIdsArray(0, testCount));
+        assertEquals(Arrays.asList(buildIdsArray(firstCount, "track ")), firstTrackIds);
+        assertEquals(Arrays.asList(buildIdsArray(secondCount, "track ")), secondTrackIds);
+    }
 
-        final Paging<TrackSimplified> trackIds = buildSimplifiedTrackPage(testCount, 0, "");
-        when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(testAlbum, 0)).thenReturn(trackIds);
+    @Test
+    @DisplayName("Base get album track artist ids test one album without pagination")
+    void getAlbumTrackArtistIds() throws IOException, SpotifyWebApiException {
+        final String testAlbum = "test album-";
+        final int testCount = 30;
 
-        final List<String> returnedTrackIds = spotifyApiDataAccessor.getAlbumTracks(Lists.newArrayList(testAlbum));
-        verify(mockSpotifyApiWrapper, times(1)).getSpotifyAlbumTracks(any(String.class), anyInt());
+        final Map<String, Map<String, List<String>>> returnedTrackArtistIds =
+                spotifyApiDataAccessor.getAlbumTrackArtistIds(Lists.newArrayList(buildAlbum(testAlbum, testCount)));
+        verify(mockSpotifyApiWrapper, times(0)).getSpotifyAlbumTracks(any(String.class), anyInt());
 
-        assertEquals(expectedTrackIds, returnedTrackIds);
+        assertEquals(Lists.newArrayList(testAlbum), new ArrayList<>(returnedTrackArtistIds.keySet()));
+        assertEquals(Arrays.asList(buildIdsArray(testCount, testAlbum)),
+                new ArrayList<>(returnedTrackArtistIds.get(testAlbum).keySet()));
     }
 
     @Test
-    @DisplayName("Get album tracks with multiple albums and pagination")
-    void getAlbumTracksWithPagination() throws IOException, SpotifyWebApiException {
+    @DisplayName("Get album track artist ids with multiple albums and pagination past the embedded first page")
+    void getAlbumTrackArtistIdsWithPagination() throws IOException, SpotifyWebApiException {
         final String testAlbum1 = "testAlbum1-";
         final String testAlbum2 = "testAlbum2-";
         final int testCount1 = 10;
         final int testCount2 = 135;
 
-        final List<String> totalExpectedTrackIds = ListUtils.union(
-                Arrays.asList(buildIdsArray(testCount1, testAlbum1)),
-                Arrays.asList(buildIdsArray(testCount2, testAlbum2)));
+        for (int offset = SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE; offset < testCount2;
+             offset += SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE) {
+            when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(testAlbum2, offset))
+                    .thenReturn(buildSimplifiedTrackPage(testCount2, offset, testAlbum2));
+        }
+
+        final Map<String, Map<String, List<String>>> returnedTrackArtistIds =
+                spotifyApiDataAccessor.getAlbumTrackArtistIds(Lists.newArrayList(
+                        buildAlbum(testAlbum1, testCount1), buildAlbum(testAlbum2, testCount2)));
+        verify(mockSpotifyApiWrapper, times(2)).getSpotifyAlbumTracks(any(String.class), anyInt());
+
+        assertEquals(Lists.newArrayList(testAlbum1, testAlbum2), new ArrayList<>(returnedTrackArtistIds.keySet()));
+        assertEquals(Arrays.asList(buildIdsArray(testCount1, testAlbum1)),
+                new ArrayList<>(returnedTrackArtistIds.get(testAlbum1).keySet()));
+        assertEquals(Arrays.asList(buildIdsArray(testCount2, testAlbum2)),
+                new ArrayList<>(returnedTrackArtistIds.get(testAlbum2).keySet()));
+    }
+
+    @Test
+    @DisplayName("Get album track artist ids concurrently keeps album order")
+    void getAlbumTrackArtistIdsConcurrently() throws IOException, SpotifyWebApiException {
+        final SpotifyCallExecutor executor = new SpotifyCallExecutor(4);
+        spotifyApiDataAccessor = buildAccessor(executor, disabledCache(), memoryStore(), 2);
+
+        final List<WrappedAlbum> albums = new ArrayList<>();
+        final List<String> albumIds = new ArrayList<>();
+        final List<String> totalExpectedTrackIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final String albumId = "testAlbum" + i + "-";
+            final int trackCount = 20 + i * 15;
+            albums.add(buildAlbum(albumId, trackCount));
+            albumIds.add(albumId);
+            totalExpectedTrackIds.addAll(Arrays.asList(buildIdsArray(trackCount, albumId)));
+            for (int offset = SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE; offset < trackCount;
+                 offset += SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE) {
+                when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(albumId, offset))
+                        .thenReturn(buildSimplifiedTrackPage(trackCount, offset, albumId));
+            }
+        }
+
+        try {
+            final Map<String, Map<String, List<String>>> returnedTrackArtistIds =
+                    spotifyApiDataAccessor.getAlbumTrackArtistIds(albums);
+            assertEquals(albumIds, new ArrayList<>(returnedTrackArtistIds.keySet()));
+            assertEquals(totalExpectedTrackIds, returnedTrackArtistIds.values()
+                    .stream()
+                    .flatMap(trackArtistIds -> trackArtistIds.keySet().stream())
+                    .collect(Collectors.toList()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Get album track artist ids concurrently propagates Spotify errors")
+    void getAlbumTrackArtistIdsConcurrentlyWithError() throws IOException, SpotifyWebApiException {
+        final SpotifyCallExecutor executor = new SpotifyCallExecutor(4);
+        spotifyApiDataAccessor = buildAccessor(executor, disabledCache(), memoryStore(), 2);
+
+        final String goodAlbum = "goodAlbum-";
+        final String badAlbum = "badAlbum-";
+        when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(goodAlbum, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE))
+                .thenReturn(buildSimplifiedTrackPage(60, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE, goodAlbum));
+        when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(badAlbum, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE))
+                .thenThrow(new TooManyRequestsException("slow down", 1));
+
+        try {
+            assertThrows(TooManyRequestsException.class, () -> spotifyApiDataAccessor.getAlbumTrackArtistIds(
+                    Lists.newArrayList(buildAlbum(goodAlbum, 60), buildAlbum(badAlbum, 60))));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Tracks including artist drops tracks that only list other artists")
+    void tracksIncludingArtist() {
+        final String testArtist = "test artist";
+        final String testAlbum = "compilation-";
+        final int testCount = 60;
+
+        final Map<String, List<String>> trackArtistIds = new LinkedHashMap<>();
+        final List<String> expectedTrackIds = new ArrayList<>();
+        for (int i = 0; i < testCount; i++) {
+            // every other track features the artist, the rest of the compilation is by someone else
+            if (i % 2 == 0) {
+                trackArtistIds.put(testAlbum + i, Lists.newArrayList("other artist", testArtist));
+                expectedTrackIds.add(testAlbum + i);
+            } else {
+                trackArtistIds.put(testAlbum + i, Lists.newArrayList("other artist"));
+            }
+        }
+        // tracks Spotify listed no artists for are kept, the hydrated tracks are filtered again later
+        trackArtistIds.put(testAlbum + testCount, null);
+        expectedTrackIds.add(testAlbum + testCount);
+
+        assertEquals(expectedTrackIds,
+                SpotifyApiDataAccessor.tracksIncludingArtist(testAlbum, trackArtistIds, testArtist));
+    }
+
+    @Test
+    @DisplayName("Get many tracks merges concurrent chunks and filters other artists")
+    void getManyTracksConcurrently() throws IOException, SpotifyWebApiException {
+        final SpotifyCallExecutor executor = new SpotifyCallExecutor(4);
+        spotifyApiDataAccessor = buildAccessor(executor, disabledCache(), memoryStore(), 2);
+
+        final String testArtist = "test artist";
+        final int testCount = 180;
+        final List<String> trackIds = Arrays.asList(buildIdsArray(testCount, "track-"));
+        for (final List<String> chunk : ListUtils.partition(trackIds, SpotifyApiConstants.TRACK_PAGE_SIZE)) {
+            final String[] chunkArray = chunk.toArray(new String[] {});
+            when(mockSpotifyApiWrapper.getSpotifyTracks(chunkArray)).thenReturn(buildTracks(chunk, testArtist));
+            when(mockSpotifyApiWrapper.getSpotifyAudioFeatures(chunkArray)).thenReturn(buildAudioFeatures(chunk));
+        }
+
+        final Map<String, WrappedTrack> returnedTracks;
+        try {
+            returnedTracks = spotifyApiDataAccessor.getManyTracks(trackIds, testArtist);
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(mockSpotifyApiWrapper, times(4)).getSpotifyTracks(any(String[].class));
+        verify(mockSpotifyApiWrapper, times(4)).getSpotifyAudioFeatures(any(String[].class));
 
-        final Paging<TrackSimplified> album1TrackIds = buildSimplifiedTrackPage(testCount1, 0, testAlbum1);
-        when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(testAlbum1, 0)).thenReturn(album1TrackIds);
+        // every third track is by someone else
+        assertEquals(testCount - testCount / 3, returnedTracks.size());
+        final WrappedTrack track = returnedTracks.get("track-1");
+        assertEquals(Lists.newArrayList(testArtist), track.getArtistIds());
+        assertEquals(Float.valueOf(1), track.getTempo());
+    }
 
-        final Paging<TrackSimplified> album2TrackIds0 = buildSimplifiedTrackPage(testCount2, 0, testAlbum2);
-        final Paging<TrackSimplified> album2TrackIds1 = buildSimplifiedTrackPage(testCount2, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE, testAlbum2);
-        final Paging<TrackSimplified> album2TrackIds2 = buildSimplifiedTrackPage(testCount2, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE * 2, testAlbum2);
-        when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(testAlbum2, 0)).thenReturn(album2TrackIds0);
-        when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(testAlbum2, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE)).thenReturn(album2TrackIds1);
-        when(mockSpotifyApiWrapper.getSpotifyAlbumTracks(testAlbum2, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE * 2)).thenReturn(album2TrackIds2);
+    @Test
+    @DisplayName("Get playlist tracks reuses the assembled tracks until the snapshot id changes")
+    void getPlaylistTracksBySnapshot() throws IOException, SpotifyWebApiException {
+        final SpotifyEntityCache cache = new SpotifyEntityCache(0, 0, 0, 0, 0, 0, 10, 60, 0);
+        spotifyApiDataAccessor = buildAccessor(new SpotifyCallExecutor(1), cache, memoryStore(), 1);
+
+        final String testPlaylist = "test playlist";
+        final List<String> trackIds = Arrays.asList(buildIdsArray(10, "track-"));
+        final String[] trackArray = trackIds.toArray(new String[] {});
+        final Track[] tracks = buildTracks(trackIds, "artist");
+        when(mockSpotifyApiWrapper.getSpotifyPlaylistSnapshotId(testPlaylist))
+                .thenReturn("snapshot 1", "snapshot 1", "snapshot 2");
+        when(mockSpotifyApiWrapper.getSpotifyPlaylistTracks(testPlaylist, 0)).thenReturn(buildPlaylistTrackPage(tracks));
+        when(mockSpotifyApiWrapper.getSpotifyTracks(trackArray)).thenReturn(tracks);
+        when(mockSpotifyApiWrapper.getSpotifyAudioFeatures(trackArray)).thenReturn(buildAudioFeatures(trackIds));
+
+        final TrackBatch first = spotifyApiDataAccessor.getPlaylistTracks(testPlaylist, TrackFields.ALL);
+        final TrackBatch unchanged = spotifyApiDataAccessor.getPlaylistTracks(testPlaylist, TrackFields.ALL);
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyPlaylistTracks(any(String.class), anyInt());
+
+        final TrackBatch edited = spotifyApiDataAccessor.getPlaylistTracks(testPlaylist, TrackFields.ALL);
+        verify(mockSpotifyApiWrapper, times(3)).getSpotifyPlaylistSnapshotId(testPlaylist);
+        verify(mockSpotifyApiWrapper, times(2)).getSpotifyPlaylistTracks(any(String.class), anyInt());
+
+        assertEquals(trackIds.size(), first.size());
+        assertEquals(first.getTrack(0), unchanged.getTrack(0));
+        assertEquals(first.getTrack(0), edited.getTrack(0));
+    }
+
+    @Test
+    @DisplayName("Get many tracks skips audio features when no audio feature fields are requested")
+    void getManyTracksWithoutAudioFeatures() throws IOException, SpotifyWebApiException {
+        final String testArtist = "test artist";
+        final List<String> trackIds = Arrays.asList(buildIdsArray(30, "track-"));
+        final String[] trackArray = trackIds.toArray(new String[] {});
+        when(mockSpotifyApiWrapper.getSpotifyTracks(trackArray)).thenReturn(buildTracks(trackIds, testArtist));
+
+        final Map<String, WrappedTrack> tracks = spotifyApiDataAccessor.getManyTracks(trackIds, testArtist,
+                TrackFields.parse("name, popularity"));
+
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyTracks(trackArray);
+        verify(mockSpotifyApiWrapper, times(0)).getSpotifyAudioFeatures(any(String[].class));
+        assertEquals(trackIds.size() - trackIds.size() / 3, tracks.size());
+        assertNull(tracks.get("track-1").getTempo());
+        assertTrue(TrackFields.parse("name,tempo").includesAudioFeatures());
+    }
+
+    @Test
+    @DisplayName("Get many tracks only fetches tracks missing from the cache")
+    void getManyTracksWithCache() throws IOException, SpotifyWebApiException {
+        final SpotifyEntityCache cache = new SpotifyEntityCache(100, 60, 100, 60, 100, 60, 0, 0, 0);
+        spotifyApiDataAccessor = buildAccessor(new SpotifyCallExecutor(1), cache, memoryStore(), 1);
+
+        final String testArtist = "test artist";
+        final List<String> firstIds = Arrays.asList(buildIdsArray(20, "track-"));
+        final List<String> missingIds = Arrays.asList(buildIdsArray(20, "other-"));
+        final String[] firstArray = firstIds.toArray(new String[] {});
+        final String[] missingArray = missingIds.toArray(new String[] {});
+        when(mockSpotifyApiWrapper.getSpotifyTracks(firstArray)).thenReturn(buildTracks(firstIds, testArtist));
+        when(mockSpotifyApiWrapper.getSpotifyAudioFeatures(firstArray)).thenReturn(buildAudioFeatures(firstIds));
+        when(mockSpotifyApiWrapper.getSpotifyTracks(missingArray)).thenReturn(buildTracks(missingIds, testArtist));
+        when(mockSpotifyApiWrapper.getSpotifyAudioFeatures(missingArray)).thenReturn(buildAudioFeatures(missingIds));
+
+        final Map<String, WrappedTrack> firstTracks = spotifyApiDataAccessor.getManyTracks(firstIds, null);
+        final Map<String, WrappedTrack> allTracks =
+                spotifyApiDataAccessor.getManyTracks(ListUtils.union(firstIds, missingIds), null);
+
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyTracks(firstArray);
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyTracks(missingArray);
+        verify(mockSpotifyApiWrapper, times(2)).getSpotifyAudioFeatures(any(String[].class));
+
+        assertEquals(firstIds.size(), firstTracks.size());
+        assertEquals(firstIds.size() + missingIds.size(), allTracks.size());
+        assertEquals(firstTracks.get("track-1"), allTracks.get("track-1"));
+
+        // callers get their own copies of cached tracks
+        allTracks.get("track-1").setName("changed");
+        assertEquals("name track-1", spotifyApiDataAccessor.getManyTracks(firstIds, null).get("track-1").getName());
+    }
 
-        final List<String> returnedTrackIds = spotifyApiDataAccessor.getAlbumTracks(Lists.newArrayList(testAlbum1, testAlbum2));
-        verify(mockSpotifyApiWrapper, times(4)).getSpotifyAlbumTracks(any(String.class), anyInt());
+    @Test
+    @DisplayName("Get many tracks reuses audio features persisted by an earlier run")
+    void getManyTracksWithAudioFeaturesStore() throws IOException, SpotifyWebApiException, InterruptedException {
+        final Path storeFile = Files.createTempFile("audio-features", ".jsonl");
+        try {
+            final List<String> trackIds = Arrays.asList(buildIdsArray(30, "track-"));
+            final String[] trackArray = trackIds.toArray(new String[] {});
+            when(mockSpotifyApiWrapper.getSpotifyTracks(trackArray)).thenReturn(buildTracks(trackIds, "artist"));
+            when(mockSpotifyApiWrapper.getSpotifyAudioFeatures(trackArray)).thenReturn(buildAudioFeatures(trackIds));
+
+            final AudioFeaturesStore firstRunStore = loadedStore(storeFile);
+            buildAccessor(new SpotifyCallExecutor(1), disabledCache(), firstRunStore, 1)
+                    .getManyTracks(trackIds, null);
+            firstRunStore.close();
+
+            final AudioFeaturesStore secondRunStore = loadedStore(storeFile);
+            final Map<String, WrappedTrack> tracks =
+                    buildAccessor(new SpotifyCallExecutor(1), disabledCache(), secondRunStore, 1)
+                    .getManyTracks(trackIds, null);
+            secondRunStore.close();
+
+            verify(mockSpotifyApiWrapper, times(2)).getSpotifyTracks(trackArray);
+            verify(mockSpotifyApiWrapper, times(1)).getSpotifyAudioFeatures(any(String[].class));
+            assertEquals(trackIds.size(), secondRunStore.size());
+            assertEquals(Float.valueOf(1), tracks.get("track-0").getTempo());
+        } finally {
+            Files.deleteIfExists(storeFile);
+        }
+    }
+
+    private AudioFeaturesStore memoryStore() {
+        return new AudioFeaturesStore("", 1000);
+    }
+
+    private AudioFeaturesStore loadedStore(final Path storeFile) throws InterruptedException {
+        final AudioFeaturesStore store = new AudioFeaturesStore(storeFile.toString(), 1000);
+        while (!store.isLoaded()) {
+            Thread.sleep(10);
+        }
+        return store;
+    }
+
+    @Test
+    @DisplayName("Get many tracks batches small concurrent lookups together")
+    void getManyTracksBatchesAcrossRequests() throws IOException, SpotifyWebApiException, InterruptedException {
+        final SpotifyTrackBatcher batcher = new SpotifyTrackBatcher(mockSpotifyApiWrapper, 200, 2);
+        spotifyApiDataAccessor = new SpotifyApiDataAccessor(mockSpotifyApiWrapper, new SpotifyCallExecutor(1),
+                batcher, disabledCache(), new SpotifySearchCache(0, 0, 0), memoryStore(), 1, 1);
+
+        final List<String> firstIds = Arrays.asList(buildIdsArray(10, "first-"));
+        final List<String> secondIds = Arrays.asList(buildIdsArray(15, "second-"));
+        final List<String> allIds = ListUtils.union(firstIds, secondIds);
+        when(mockSpotifyApiWrapper.getSpotifyTracks(any(String[].class)))
+                .thenAnswer(invocation -> buildTracks(Arrays.asList((String[]) invocation.getArguments()[0]), "artist"));
+        when(mockSpotifyApiWrapper.getSpotifyAudioFeatures(any(String[].class)))
+                .thenAnswer(invocation -> buildAudioFeatures(Arrays.asList((String[]) invocation.getArguments()[0])));
+
+        final List<Map<String, WrappedTrack>> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> requests = new ArrayList<>();
+        for (final List<String> ids : Lists.newArrayList(firstIds, secondIds)) {
+            final Thread request = new Thread(() -> {
+                try {
+                    results.add(spotifyApiDataAccessor.getManyTracks(ids, null));
+                } catch (final IOException | SpotifyWebApiException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            request.start();
+            requests.add(request);
+        }
+        for (final Thread request : requests) {
+            request.join();
+        }
+        batcher.shutdown();
 
-        assertEquals(totalExpectedTrackIds, returnedTrackIds);
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyTracks(any(String[].class));
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyAudioFeatures(any(String[].class));
+        assertEquals(2, results.size());
+        assertEquals(allIds.size(), results.get(0).size() + results.get(1).size());
+    }
+
+    @Test
+    @DisplayName("Lookup tracks fetches shared albums and tracks once for the whole batch")
+    void lookupTracksDeduplicates() throws IOException, SpotifyWebApiException {
+        final SpotifyCallExecutor executor = new SpotifyCallExecutor(4);
+        spotifyApiDataAccessor = buildAccessor(executor, disabledCache(), memoryStore(), 2);
+
+        // both artists are on every album, like a duo's discography
+        final String firstArtist = "first artist";
+        final String secondArtist = "second artist";
+        final int albumCount = 10;
+        when(mockSpotifyApiWrapper.getSpotifyArtistsAlbums(any(String.class), anyInt()))
+                .thenAnswer(invocation -> buildSimplifiedAlbumPage(albumCount, 0));
+        when(mockSpotifyApiWrapper.getSpotifyAlbums(any(String[].class))).thenReturn(buildAlbums(albumCount, 0));
+        when(mockSpotifyApiWrapper.getSpotifyTracks(any(String[].class))).thenAnswer(invocation ->
+                Arrays.stream((String[]) invocation.getArguments()[0])
+                        .map(id -> id.startsWith("track ") ? new Track.Builder()
+                                .setId(id)
+                                .setArtists(new ArtistSimplified.Builder().setId(firstArtist).build(),
+                                        new ArtistSimplified.Builder().setId(secondArtist).build())
+                                .setAlbum(new AlbumSimplified.Builder().setId("album").build())
+                                .build() : null)
+                        .toArray(Track[]::new));
+        when(mockSpotifyApiWrapper.getSpotifyAudioFeatures(any(String[].class)))
+                .thenAnswer(invocation -> buildAudioFeatures(Arrays.asList((String[]) invocation.getArguments()[0])));
+
+        final TrackLookupResult result;
+        try {
+            result = spotifyApiDataAccessor.lookupTracks(
+                    Arrays.asList(firstArtist, secondArtist, firstArtist),
+                    Arrays.asList("track 3", "unknown track", "track 3"),
+                    TrackFields.ALL);
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(mockSpotifyApiWrapper, times(2)).getSpotifyArtistsAlbums(any(String.class), anyInt());
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyAlbums(any(String[].class));
+        verify(mockSpotifyApiWrapper, times(1)).getSpotifyTracks(any(String[].class));
+
+        assertEquals(Arrays.asList(firstArtist, secondArtist), new ArrayList<>(result.getArtists().keySet()));
+        assertEquals(albumCount, result.getArtists().get(firstArtist).size());
+        assertEquals(albumCount, result.getArtists().get(secondArtist).size());
+        assertEquals(1, result.getTracks().size());
+        assertEquals("track 3", result.getTracks().getSpotifyId(0));
+    }
+
+    private SpotifyApiDataAccessor buildAccessor(final SpotifyCallExecutor executor,
+                                                 final SpotifyEntityCache cache,
+                                                 final AudioFeaturesStore store,
+                                                 final int maxTrackChunksInFlight) {
+        return new SpotifyApiDataAccessor(mockSpotifyApiWrapper,
+                executor,
+                new SpotifyTrackBatcher(mockSpotifyApiWrapper, 0, 2),
+                cache,
+                new SpotifySearchCache(0, 0, 0),
+                store,
+                maxTrackChunksInFlight,
+                2);
+    }
+
+    private SpotifyEntityCache disabledCache() {
+        return new SpotifyEntityCache(0, 0, 0, 0, 0, 0, 0, 0, 0);
     }
 
     private String[] buildIdsArray(int start, final int count) {
@@ -271,14 +703,40 @@ class SpotifyApiDataAccessorTest {
                     i,
                     imageUrls,
                     trackIds,
+                    trackIds.size(),
                     "releasedate " + itemString,
-                    "DAY");
+                    "DAY",
+                    new HashMap<>());
             wrappedAlbums.add(album);
         }
 
         return wrappedAlbums;
     }
 
+    private WrappedAlbum buildWrappedAlbum(final String albumId, final List<String> trackIds, final int totalTracks) {
+        return new WrappedAlbum(albumId,
+                Lists.newArrayList("artist"),
+                "ALBUM",
+                new ArrayList<>(),
+                "name " + albumId,
+                0,
+                new ArrayList<>(),
+                new ArrayList<>(trackIds),
+                totalTracks,
+                "releasedate",
+                "DAY",
+                new HashMap<>());
+    }
+
+    /**
+     * An album as fetched by getSpotifyAlbums, with only its first page of tracks embedded
+     */
+    private WrappedAlbum buildAlbum(final String albumId, final int trackCount) {
+        final List<String> trackIds = Arrays.asList(buildIdsArray(trackCount, albumId));
+        return buildWrappedAlbum(albumId,
+                trackIds.subList(0, Math.min(trackCount, SpotifyApiConstants.ALBUM_TRACK_PAGE_SIZE)), trackCount);
+    }
+
     private Paging<AlbumSimplified> buildSimplifiedAlbumPage(final int itemCount, final int offset) {
         final Paging.Builder<AlbumSimplified> albumPageBuilder = new Paging.Builder<>();
 
@@ -375,6 +833,46 @@ class SpotifyApiDataAccessorTest {
         return playlistPageBuilder.build();
     }
 
+    private Track[] buildTracks(final List<String> trackIds, final String artistId) {
+        final Track[] tracks = new Track[trackIds.size()];
+        for (int i = 0; i < tracks.length; i++) {
+            final String trackId = trackIds.get(i);
+            final String trackArtist = Integer.parseInt(trackId.substring(trackId.indexOf('-') + 1)) % 3 == 0 ?
+                    "other artist" : artistId;
+            tracks[i] = new Track.Builder()
+                    .setId(trackId)
+                    .setName("name " + trackId)
+                    .setArtists(new ArtistSimplified.Builder().setId(trackArtist).build())
+                    .setAlbum(new AlbumSimplified.Builder().setId("album").build())
+                    .setPopularity(i)
+                    .setTrackNumber(i)
+                    .build();
+        }
+        return tracks;
+    }
+
+    private Paging<PlaylistTrack> buildPlaylistTrackPage(final Track[] tracks) {
+        final PlaylistTrack[] items = Arrays.stream(tracks)
+                .map(t -> new PlaylistTrack.Builder().setTrack(t).build())
+                .toArray(PlaylistTrack[]::new);
+        return new Paging.Builder<PlaylistTrack>()
+                .setItems(items)
+                .setTotal(items.length)
+                .build();
+    }
+
+    private AudioFeatures[] buildAudioFeatures(final List<String> trackIds) {
+        final AudioFeatures[] audioFeatures = new AudioFeatures[trackIds.size()];
+        for (int i = 0; i < audioFeatures.length; i++) {
+            audioFeatures[i] = new AudioFeatures.Builder()
+                    .setId(trackIds.get(i))
+                    .setMode(Modality.MAJOR)
+                    .setTempo(1f)
+                    .build();
+        }
+        return audioFeatures;
+    }
+
     private Paging<TrackSimplified> buildSimplifiedTrackPage(final int itemCount, final int offset, final String prefix) {
         final Paging.Builder<TrackSimplified> trackPageBuilder = new Paging.Builder<>();
 
@@ -0,0 +1,78 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.cache.AudioFeaturesStore;
+import com.wanderingmotivation.spotify.callwrapper.cache.SpotifyEntityCache;
+import com.wanderingmotivation.spotify.callwrapper.fake.FakeSpotifyServer;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackBatch;
+import com.wanderingmotivation.spotify.callwrapper.model.TrackFields;
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedArtist;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The real wrapper, scheduler and http client against the in process fake Spotify, no mocks and no network
+ */
+class SpotifyApiEndToEndTest {
+    private FakeSpotifyServer fakeSpotify;
+    private SpotifyApiWrapper spotifyApiWrapper;
+    private SpotifyCallExecutor callExecutor;
+    private SpotifyTrackBatcher trackBatcher;
+    private SpotifyApiDataAccessor spotifyApiDataAccessor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fakeSpotify = new FakeSpotifyServer().withCatalog(8, 30, 120);
+        spotifyApiWrapper = new SpotifyApiWrapper("fake-id", "fake-secret",
+                fakeSpotify.getUri(), fakeSpotify.getUri(), 0,
+                new SpotifyRequestScheduler(1000, 100, 4, 8, 5),
+                new PooledHttpManager(16, 16, 1000, 5000, 1000, 1000),
+                new SpotifyCallMetrics(new SimpleMeterRegistry()));
+        callExecutor = new SpotifyCallExecutor(4);
+        trackBatcher = new SpotifyTrackBatcher(spotifyApiWrapper, 0, 4);
+        spotifyApiDataAccessor = new SpotifyApiDataAccessor(spotifyApiWrapper,
+                callExecutor,
+                trackBatcher,
+                new SpotifyEntityCache(0, 0, 0, 0, 0, 0, 0, 0, 0),
+                new SpotifySearchCache(0, 0, 0),
+                new AudioFeaturesStore("", 1000),
+                2,
+                2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        trackBatcher.shutdown();
+        callExecutor.shutdown();
+        spotifyApiWrapper.shutdown();
+        fakeSpotify.close();
+    }
+
+    @Test
+    @DisplayName("Artist tracks come through 429s and a revoked token")
+    void getArtistTracksThroughThrottlingAndRevokedToken() throws IOException, SpotifyWebApiException {
+        final List<WrappedArtist> artists = spotifyApiDataAccessor.searchForArtist("warm up");
+        assertEquals(20, artists.size());
+
+        fakeSpotify.withThrottling(5, 0);
+        fakeSpotify.revokeTokens();
+        final TrackBatch tracks = spotifyApiDataAccessor.getArtistTracks("artist", TrackFields.ALL);
+
+        assertEquals(fakeSpotify.getArtistTrackCount(), tracks.size());
+        for (int i = 0; i < tracks.size(); i++) {
+            assertTrue(tracks.getTrack(i).getArtistIds().contains("artist"));
+        }
+        assertTrue(fakeSpotify.getThrottledCount() > 0);
+        assertTrue(fakeSpotify.getUnauthorizedCount() > 0);
+        assertEquals(2, fakeSpotify.getTokensIssued());
+    }
+}
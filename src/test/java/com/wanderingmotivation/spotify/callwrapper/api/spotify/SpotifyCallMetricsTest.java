@@ -0,0 +1,54 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.exceptions.detailed.NotFoundException;
+import com.wrapper.spotify.exceptions.detailed.ServiceUnavailableException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpotifyCallMetricsTest {
+    @Test
+    @DisplayName("Calls are timed per operation and status, with error statuses counted separately")
+    void recordsCallsByOperationAndStatus() {
+        final MeterRegistry registry = new SimpleMeterRegistry();
+        final SpotifyCallMetrics callMetrics = new SpotifyCallMetrics(registry);
+
+        assertEquals("tracks", callMetrics.record("several-tracks", () -> {
+            assertEquals(1.0, registry.get(SpotifyCallMetrics.IN_FLIGHT).tag("operation", "several-tracks")
+                    .gauge().value());
+            return "tracks";
+        }));
+        assertThrows(RuntimeException.class, () -> callMetrics.record("several-tracks", () -> {
+            throw new RuntimeException(new TooManyRequestsException("slow down", 1));
+        }));
+        assertThrows(RuntimeException.class, () -> callMetrics.record("audio-features", () -> {
+            throw new RuntimeException(new ServiceUnavailableException("down"));
+        }));
+        assertThrows(RuntimeException.class, () -> callMetrics.record("audio-features", () -> {
+            throw new RuntimeException(new NotFoundException("missing"));
+        }));
+        assertThrows(RuntimeException.class, () -> callMetrics.record("audio-features", () -> {
+            throw new RuntimeException(new NotFoundException("missing again"));
+        }));
+
+        assertEquals(1, registry.get(SpotifyCallMetrics.REQUESTS)
+                .tags("operation", "several-tracks", "status", "200").timer().count());
+        assertEquals(1, registry.get(SpotifyCallMetrics.REQUESTS)
+                .tags("operation", "several-tracks", "status", "429").timer().count());
+        assertEquals(1.0, registry.get(SpotifyCallMetrics.ERRORS)
+                .tags("operation", "several-tracks", "status", "429").counter().count());
+        assertEquals(1.0, registry.get(SpotifyCallMetrics.ERRORS)
+                .tags("operation", "audio-features", "status", "5xx").counter().count());
+        assertEquals(2, registry.get(SpotifyCallMetrics.REQUESTS)
+                .tags("operation", "audio-features", "status", "4xx").timer().count());
+        assertEquals(2.0, registry.get(SpotifyCallMetrics.ERRORS)
+                .tags("operation", "audio-features", "status", "4xx").counter().count());
+        assertEquals(0.0, registry.get(SpotifyCallMetrics.IN_FLIGHT).tag("operation", "several-tracks")
+                .gauge().value());
+    }
+}
@@ -0,0 +1,71 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpotifyPaginatorTest {
+    private static final int PAGE_SIZE = 10;
+
+    private SpotifyCallExecutor executor;
+
+    @BeforeEach
+    void setup() {
+        executor = new SpotifyCallExecutor(4);
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Pages after the first are fetched concurrently and come back in listing order")
+    void fetchAllInOrder() throws IOException, SpotifyWebApiException {
+        final SpotifyPaginator paginator = new SpotifyPaginator(executor, 3);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final List<Integer> items = paginator.fetchAll("numbers", offset -> {
+            calls.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                // later offsets finish first
+                Thread.sleep(Math.max(0, 50 - offset));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return buildPage(95, offset);
+        }, 5, PAGE_SIZE);
+
+        assertEquals(IntStream.range(5, 95).boxed().collect(Collectors.toList()), items);
+        assertEquals(9, calls.get());
+        assertTrue(maxInFlight.get() > 1, "expected concurrent page fetches");
+        assertTrue(maxInFlight.get() <= 3, "expected at most 3 page fetches in flight");
+    }
+
+    private static Paging<Integer> buildPage(final int total, final int offset) {
+        final Integer[] items = IntStream.range(offset, Math.min(total, offset + PAGE_SIZE))
+                .boxed()
+                .toArray(Integer[]::new);
+        return new Paging.Builder<Integer>()
+                .setTotal(total)
+                .setItems(items)
+                .build();
+    }
+}
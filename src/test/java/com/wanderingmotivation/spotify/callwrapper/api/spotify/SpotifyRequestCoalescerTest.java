@@ -0,0 +1,63 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpotifyRequestCoalescerTest {
+    @Test
+    @DisplayName("A caller whose work times out hands it to a waiting caller instead of failing it")
+    void timedOutCallerHandsOffWork() throws InterruptedException {
+        final SpotifyRequestCoalescer coalescer = new SpotifyRequestCoalescer();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch ownerStarted = new CountDownLatch(1);
+        final SpotifyCall<String> call = () -> {
+            if (calls.incrementAndGet() == 1) {
+                ownerStarted.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (final InterruptedException e) {
+                    // what SpotifyCallExecutor.await does when the request's timeout cancels it
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting on a Spotify call", e);
+                }
+            }
+            return "tracks";
+        };
+
+        final AtomicReference<Object> firstResult = new AtomicReference<>();
+        final AtomicReference<Object> secondResult = new AtomicReference<>();
+        final Thread first = new Thread(() -> firstResult.set(coalesce(coalescer, call)));
+        final Thread second = new Thread(() -> secondResult.set(coalesce(coalescer, call)));
+        first.start();
+        ownerStarted.await();
+        second.start();
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(5);
+        }
+        first.interrupt();
+        first.join();
+        second.join();
+
+        assertTrue(firstResult.get() instanceof IOException);
+        assertEquals("tracks", secondResult.get());
+        assertEquals(2, calls.get());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    private static Object coalesce(final SpotifyRequestCoalescer coalescer, final SpotifyCall<String> call) {
+        try {
+            return coalescer.coalesce(call, "artist-tracks", "artist");
+        } catch (final Exception e) {
+            return e;
+        }
+    }
+}
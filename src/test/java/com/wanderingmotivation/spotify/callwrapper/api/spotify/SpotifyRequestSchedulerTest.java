@@ -0,0 +1,90 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.BadRequestException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class SpotifyRequestSchedulerTest {
+    private SpotifyRequestScheduler scheduler;
+
+    @BeforeEach
+    void initialize() {
+        scheduler = new SpotifyRequestScheduler(1000, 10, 8, 16, 2);
+    }
+
+    @Test
+    @DisplayName("Retries after too many requests and halves the concurrency limit")
+    void retriesTooManyRequests() throws IOException, SpotifyWebApiException {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String result = scheduler.schedule(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                // the api wrapper's function wrappers hand the real error back as a cause
+                throw new RuntimeException(new TooManyRequestsException("slow down", 0));
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+        assertEquals(4, scheduler.getConcurrencyLimit());
+    }
+
+    @Test
+    @DisplayName("Gives up after the max number of retries")
+    void givesUpAfterMaxRetries() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(TooManyRequestsException.class, () -> scheduler.schedule(() -> {
+            attempts.incrementAndGet();
+            throw new TooManyRequestsException("slow down", 0);
+        }));
+        assertEquals(3, attempts.get());
+        assertEquals(1, scheduler.getConcurrencyLimit());
+    }
+
+    @Test
+    @DisplayName("A rate of zero turns pacing off instead of blocking once the burst is spent")
+    void zeroRateIsUnlimited() {
+        final SpotifyRequestScheduler unpaced = new SpotifyRequestScheduler(0, 1, 1, 1, 0);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 10; i++) {
+                assertEquals("ok", unpaced.schedule(() -> "ok"));
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Other errors aren't retried")
+    void doesNotRetryOtherErrors() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(BadRequestException.class, () -> scheduler.schedule(() -> {
+            attempts.incrementAndGet();
+            throw new BadRequestException("bad");
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(8, scheduler.getConcurrencyLimit());
+    }
+
+    @Test
+    @DisplayName("Successes ramp the concurrency limit back up")
+    void rampsUpOnSuccess() throws IOException, SpotifyWebApiException {
+        for (int i = 0; i < 100; i++) {
+            scheduler.schedule(() -> "ok");
+        }
+        assertEquals(16, scheduler.getConcurrencyLimit());
+    }
+}
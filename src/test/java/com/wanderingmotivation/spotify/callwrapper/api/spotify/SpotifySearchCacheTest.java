@@ -0,0 +1,93 @@
+package com.wanderingmotivation.spotify.callwrapper.api.spotify;
+
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedArtist;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpotifySearchCacheTest {
+    private static final UnaryOperator<Integer> IDENTITY = UnaryOperator.identity();
+
+    private SpotifySearchCache searchCache;
+
+    @AfterEach
+    void shutdown() {
+        searchCache.shutdown();
+    }
+
+    @Test
+    @DisplayName("Queries differing only in case and whitespace share one entry")
+    void normalizedQueriesShareResults() throws IOException, SpotifyWebApiException {
+        searchCache = new SpotifySearchCache(10, 60, 60);
+        final AtomicInteger calls = new AtomicInteger();
+        final SpotifyCall<List<Integer>> call = () -> Collections.singletonList(calls.incrementAndGet());
+
+        assertEquals("Daft PUNK", SpotifySearchCache.normalize("  Daft \t PUNK "));
+        assertEquals("daft punk", SpotifySearchCache.cacheKey("  Daft \t PUNK "));
+        assertEquals(Collections.singletonList(1), searchCache.get(call, "search", "Daft Punk", IDENTITY));
+        assertEquals(Collections.singletonList(1), searchCache.get(call, "search", " daft  punk", IDENTITY));
+        assertEquals(Collections.singletonList(2), searchCache.get(call, "other search", "daft punk", IDENTITY));
+
+        assertEquals(2, calls.get());
+        assertEquals(1, searchCache.getHitCount());
+        assertEquals(2, searchCache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Every caller gets its own unmodifiable copy of the results")
+    void resultsAreCopied() throws IOException, SpotifyWebApiException {
+        searchCache = new SpotifySearchCache(10, 60, 60);
+        final List<WrappedArtist> fetched = Collections.singletonList(
+                new WrappedArtist("artist", new ArrayList<>(), "name", 1, new ArrayList<>()));
+        final SpotifyCall<List<WrappedArtist>> call = () -> fetched;
+
+        final List<WrappedArtist> first = searchCache.get(call, "search", "query", WrappedArtist::new);
+        first.get(0).setName("changed");
+        final List<WrappedArtist> second = searchCache.get(call, "search", "query", WrappedArtist::new);
+
+        assertEquals("name", second.get(0).getName());
+        assertNotSame(fetched.get(0), second.get(0));
+        assertThrows(UnsupportedOperationException.class, () -> second.add(fetched.get(0)));
+    }
+
+    @Test
+    @DisplayName("Upper case operators keep their own entries")
+    void operatorsKeepTheirCase() {
+        searchCache = new SpotifySearchCache(10, 60, 60);
+
+        assertEquals("daft AND punk NOT live", SpotifySearchCache.cacheKey("Daft AND Punk NOT Live"));
+        assertEquals("daft and punk not live", SpotifySearchCache.cacheKey("Daft and Punk not Live"));
+    }
+
+    @Test
+    @DisplayName("Stale results are served while they refresh in the background")
+    void staleWhileRevalidate() throws IOException, SpotifyWebApiException, InterruptedException {
+        searchCache = new SpotifySearchCache(10, 0, 60);
+        final AtomicInteger calls = new AtomicInteger();
+        final SpotifyCall<List<Integer>> call = () -> Collections.singletonList(calls.incrementAndGet());
+
+        assertEquals(Collections.singletonList(1), searchCache.get(call, "search", "query", IDENTITY));
+        assertEquals(Collections.singletonList(1), searchCache.get(call, "search", "query", IDENTITY));
+        while (calls.get() < 2) {
+            Thread.sleep(10);
+        }
+        // the refresh lands in the cache right after its call returns
+        Thread.sleep(50);
+
+        assertEquals(Collections.singletonList(2), searchCache.get(call, "search", "query", IDENTITY));
+        assertEquals(1, searchCache.getMissCount());
+        assertEquals(2, searchCache.getStaleHitCount());
+    }
+}
@@ -0,0 +1,54 @@
+package com.wanderingmotivation.spotify.callwrapper.cache;
+
+import com.wanderingmotivation.spotify.callwrapper.model.WrappedAudioFeatures;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AudioFeaturesStoreTest {
+    @Test
+    @DisplayName("Features put while the file is still loading aren't appended twice")
+    void putDuringLoadDoesNotDuplicate() throws IOException {
+        final Path storeFile = Files.createTempFile("audio-features", ".jsonl");
+        try {
+            final AudioFeaturesStore firstRunStore = new AudioFeaturesStore(storeFile.toString(), 10);
+            firstRunStore.putAll(Collections.singletonList(buildAudioFeatures("track-0")));
+            firstRunStore.close();
+
+            final AudioFeaturesStore secondRunStore = new AudioFeaturesStore(storeFile.toString(), 10);
+            secondRunStore.putAll(Arrays.asList(buildAudioFeatures("track-0"), buildAudioFeatures("track-1")));
+            secondRunStore.close();
+
+            final List<String> records = Files.readAllLines(storeFile, StandardCharsets.UTF_8);
+            assertEquals(2, records.size());
+            assertEquals(1, records.stream().filter(record -> record.contains("\"track-0\"")).count());
+        } finally {
+            Files.deleteIfExists(storeFile);
+        }
+    }
+
+    @Test
+    @DisplayName("Only the most recently used features are kept in memory")
+    void memoryIsBounded() {
+        final AudioFeaturesStore store = new AudioFeaturesStore("", 2);
+        store.putAll(Arrays.asList(buildAudioFeatures("track-0"), buildAudioFeatures("track-1"),
+                buildAudioFeatures("track-2")));
+
+        assertEquals(2, store.size());
+        assertEquals(2, store.getAll(Arrays.asList("track-0", "track-1", "track-2")).size());
+        assertEquals(0, store.getAll(Collections.singletonList("track-0")).size());
+    }
+
+    private static WrappedAudioFeatures buildAudioFeatures(final String trackId) {
+        return new WrappedAudioFeatures(trackId, 1f, 1f, 1, 1f, 1, 1f, 1f, 1f, 1f, 1f, 1f, 1, 4);
+    }
+}
@@ -0,0 +1,474 @@
+package com.wanderingmotivation.spotify.callwrapper.fake;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In process stand in for the Spotify accounts service and the Web API endpoints SpotifyApiWrapper uses
+ * The catalog is synthetic and derived from the ids alone, so any artist, album, track or playlist id of the right
+ * shape exists and always looks the same:
+ * <ul>
+ *     <li>artist X has albumsPerArtist albums X-album-0, X-album-1, ...</li>
+ *     <li>album A has tracksPerAlbum tracks A-track-0, A-track-1, ...</li>
+ *     <li>every fourth album of an artist is a compilation where only the first track is by the artist</li>
+ *     <li>playlist P holds the tracks of artist P's first albums, up to playlistLength tracks</li>
+ * </ul>
+ * Latency, 429 injection and access token lifetime are configurable, everything runs on localhost.
+ */
+public class FakeSpotifyServer implements AutoCloseable {
+    private static final String OTHER_ARTIST_ID = "someone-else";
+
+    private static final Pattern ALBUM_ID = Pattern.compile("(.+)-album-(\\d+)");
+    private static final Pattern TRACK_ID = Pattern.compile("((.+)-album-(\\d+))-track-(\\d+)");
+    private static final Pattern ARTIST_ALBUMS = Pattern.compile("/v1/artists/([^/]+)/albums");
+    private static final Pattern ALBUM_TRACKS = Pattern.compile("/v1/albums/([^/]+)/tracks");
+    private static final Pattern PLAYLIST_TRACKS = Pattern.compile("/v1/(?:users/[^/]+/)?playlists/([^/]+)/tracks");
+    private static final Pattern PLAYLIST = Pattern.compile("/v1/(?:users/[^/]+/)?playlists/([^/]+)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "fake-spotify");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int albumsPerArtist = 8;
+    private volatile int tracksPerAlbum = 12;
+    private volatile int playlistLength = 150;
+    private volatile long latencyMillis;
+    private volatile int throttleEvery;
+    private volatile int retryAfterSeconds;
+    private volatile long tokenLifetimeSeconds = 3600;
+
+    private final Map<String, Long> tokenExpiry = new ConcurrentHashMap<>();
+    private final AtomicLong apiRequests = new AtomicLong();
+    private final AtomicLong throttledRequests = new AtomicLong();
+    private final AtomicLong unauthorizedRequests = new AtomicLong();
+    private final AtomicInteger tokensIssued = new AtomicInteger();
+
+    public FakeSpotifyServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/token", this::handleToken);
+        server.createContext("/v1/", this::handleApi);
+        server.start();
+    }
+
+    /**
+     * @return base URI for both spotify.api.uri and spotify.auth.uri
+     */
+    public URI getUri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    /**
+     * @param albumsPerArtist albums listed for every artist
+     * @param tracksPerAlbum tracks on every album
+     * @param playlistLength tracks on every playlist
+     */
+    public FakeSpotifyServer withCatalog(final int albumsPerArtist,
+                                         final int tracksPerAlbum,
+                                         final int playlistLength) {
+        this.albumsPerArtist = albumsPerArtist;
+        this.tracksPerAlbum = tracksPerAlbum;
+        this.playlistLength = playlistLength;
+        return this;
+    }
+
+    /**
+     * @param latencyMillis delay before answering each Web API request
+     */
+    public FakeSpotifyServer withLatency(final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * @param throttleEvery answer every nth Web API request with a 429, 0 to never throttle
+     * @param retryAfterSeconds Retry-After sent with each 429
+     */
+    public FakeSpotifyServer withThrottling(final int throttleEvery, final int retryAfterSeconds) {
+        this.throttleEvery = throttleEvery;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * @param tokenLifetimeSeconds expires_in of issued tokens, requests with an older token get a 401
+     */
+    public FakeSpotifyServer withTokenLifetime(final long tokenLifetimeSeconds) {
+        this.tokenLifetimeSeconds = tokenLifetimeSeconds;
+        return this;
+    }
+
+    /**
+     * Revokes every issued token ahead of its expiry, like Spotify occasionally does
+     */
+    public void revokeTokens() {
+        tokenExpiry.clear();
+    }
+
+    /**
+     * @return how many tracks of any artist list that artist, compilation tracks by others excluded
+     */
+    public int getArtistTrackCount() {
+        int count = 0;
+        for (int album = 0; album < albumsPerArtist; album++) {
+            count += isCompilation(album) ? 1 : tracksPerAlbum;
+        }
+        return count;
+    }
+
+    public long getApiRequestCount() {
+        return apiRequests.get();
+    }
+
+    public long getThrottledCount() {
+        return throttledRequests.get();
+    }
+
+    public long getUnauthorizedCount() {
+        return unauthorizedRequests.get();
+    }
+
+    public int getTokensIssued() {
+        return tokensIssued.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleToken(final HttpExchange exchange) throws IOException {
+        final String token = "fake-token-" + tokensIssued.incrementAndGet();
+        tokenExpiry.put(token, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(tokenLifetimeSeconds));
+        final JsonObject credentials = new JsonObject();
+        credentials.addProperty("access_token", token);
+        credentials.addProperty("token_type", "Bearer");
+        credentials.addProperty("expires_in", tokenLifetimeSeconds);
+        respond(exchange, 200, credentials);
+    }
+
+    private void handleApi(final HttpExchange exchange) throws IOException {
+        final long request = apiRequests.incrementAndGet();
+        sleep(latencyMillis);
+
+        if (!isAuthorized(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            unauthorizedRequests.incrementAndGet();
+            respond(exchange, 401, error(401, "The access token expired"));
+            return;
+        }
+        final int throttle = throttleEvery;
+        if (throttle > 0 && request % throttle == 0) {
+            throttledRequests.incrementAndGet();
+            exchange.getResponseHeaders().add("Retry-After", Integer.toString(retryAfterSeconds));
+            respond(exchange, 429, error(429, "API rate limit exceeded"));
+            return;
+        }
+
+        final String path = exchange.getRequestURI().getPath();
+        final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        final int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+        final int limit = Integer.parseInt(query.getOrDefault("limit", "20"));
+        Matcher matcher;
+
+        if (path.equals("/v1/search")) {
+            respond(exchange, 200, search(query.getOrDefault("q", ""), query.getOrDefault("type", "artist"), limit));
+        } else if (path.equals("/v1/albums")) {
+            respond(exchange, 200, several("albums", query.get("ids"), this::album));
+        } else if (path.equals("/v1/tracks")) {
+            respond(exchange, 200, several("tracks", query.get("ids"), this::track));
+        } else if (path.equals("/v1/audio-features")) {
+            respond(exchange, 200, several("audio_features", query.get("ids"), this::audioFeatures));
+        } else if ((matcher = ARTIST_ALBUMS.matcher(path)).matches()) {
+            respond(exchange, 200, artistAlbums(matcher.group(1), offset, limit));
+        } else if ((matcher = ALBUM_TRACKS.matcher(path)).matches()) {
+            respond(exchange, 200, albumTracks(matcher.group(1), offset, limit));
+        } else if ((matcher = PLAYLIST_TRACKS.matcher(path)).matches()) {
+            respond(exchange, 200, playlistTracks(matcher.group(1), offset, limit));
+        } else if ((matcher = PLAYLIST.matcher(path)).matches()) {
+            final JsonObject playlist = new JsonObject();
+            playlist.addProperty("snapshot_id", "snapshot-" + matcher.group(1));
+            respond(exchange, 200, playlist);
+        } else {
+            respond(exchange, 404, error(404, "Service not found"));
+        }
+    }
+
+    private boolean isAuthorized(final String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return false;
+        }
+        final Long expiresAt = tokenExpiry.get(authorization.substring("Bearer ".length()));
+        return expiresAt != null && System.currentTimeMillis() < expiresAt;
+    }
+
+    private JsonObject search(final String q, final String type, final int limit) {
+        final JsonArray items = new JsonArray();
+        for (int i = 0; i < limit; i++) {
+            final String id = q.replaceAll("\\W+", "-") + "-" + i;
+            if (type.equals("album")) {
+                items.add(albumSimplified(id + "-album-0"));
+            } else if (type.equals("playlist")) {
+                items.add(playlistSimplified(id));
+            } else {
+                items.add(artist(id));
+            }
+        }
+        final JsonObject result = new JsonObject();
+        result.add(type + "s", paging(items, 0, limit, 1000));
+        return result;
+    }
+
+    private JsonObject artistAlbums(final String artistId, final int offset, final int limit) {
+        final JsonArray items = new JsonArray();
+        for (int i = offset; i < Math.min(albumsPerArtist, offset + limit); i++) {
+            items.add(albumSimplified(artistId + "-album-" + i));
+        }
+        return paging(items, offset, limit, albumsPerArtist);
+    }
+
+    private JsonObject albumTracks(final String albumId, final int offset, final int limit) {
+        final JsonArray items = new JsonArray();
+        for (int i = offset; i < Math.min(tracksPerAlbum, offset + limit); i++) {
+            items.add(trackSimplified(albumId + "-track-" + i));
+        }
+        return paging(items, offset, limit, tracksPerAlbum);
+    }
+
+    private JsonObject playlistTracks(final String playlistId, final int offset, final int limit) {
+        final JsonArray items = new JsonArray();
+        for (int i = offset; i < Math.min(playlistLength, offset + limit); i++) {
+            final JsonObject item = new JsonObject();
+            item.addProperty("is_local", false);
+            item.add("track", track(playlistId + "-album-" + i / tracksPerAlbum + "-track-" + i % tracksPerAlbum));
+            items.add(item);
+        }
+        return paging(items, offset, limit, playlistLength);
+    }
+
+    private JsonObject album(final String albumId) {
+        final Matcher matcher = ALBUM_ID.matcher(albumId);
+        if (!matcher.matches()) {
+            return null;
+        }
+        final JsonObject album = albumSimplified(albumId);
+        album.add("genres", new JsonArray());
+        album.addProperty("popularity", Math.abs(albumId.hashCode() % 100));
+        album.addProperty("release_date", "2018-01-01");
+        album.addProperty("release_date_precision", "day");
+        album.add("tracks", albumTracks(albumId, 0, 50));
+        return album;
+    }
+
+    private JsonObject albumSimplified(final String albumId) {
+        final Matcher matcher = ALBUM_ID.matcher(albumId);
+        final String artistId = matcher.matches() && !isCompilation(Integer.parseInt(matcher.group(2))) ?
+                matcher.group(1) :
+                OTHER_ARTIST_ID;
+        final JsonObject album = new JsonObject();
+        album.addProperty("id", albumId);
+        album.addProperty("name", "album " + albumId);
+        album.addProperty("album_type", "album");
+        album.addProperty("type", "album");
+        album.add("artists", artists(artistId));
+        album.add("images", images(albumId));
+        return album;
+    }
+
+    private JsonObject trackSimplified(final String trackId) {
+        final Matcher matcher = TRACK_ID.matcher(trackId);
+        if (!matcher.matches()) {
+            return null;
+        }
+        final int number = Integer.parseInt(matcher.group(4));
+        final boolean byArtist = !isCompilation(Integer.parseInt(matcher.group(3))) || number == 0;
+        final JsonObject track = new JsonObject();
+        track.addProperty("id", trackId);
+        track.addProperty("name", "track " + trackId);
+        track.addProperty("type", "track");
+        track.addProperty("track_number", number + 1);
+        track.addProperty("disc_number", 1);
+        track.addProperty("duration_ms", 180000 + number);
+        track.addProperty("explicit", false);
+        track.add("artists", artists(byArtist ? matcher.group(2) : OTHER_ARTIST_ID));
+        return track;
+    }
+
+    private JsonObject track(final String trackId) {
+        final JsonObject track = trackSimplified(trackId);
+        if (track == null) {
+            return null;
+        }
+        final Matcher matcher = TRACK_ID.matcher(trackId);
+        matcher.matches();
+        track.add("album", albumSimplified(matcher.group(1)));
+        track.addProperty("popularity", Math.abs(trackId.hashCode() % 100));
+        return track;
+    }
+
+    private JsonObject audioFeatures(final String trackId) {
+        if (!TRACK_ID.matcher(trackId).matches()) {
+            return null;
+        }
+        final int seed = trackId.hashCode() & 0xffff;
+        final JsonObject audioFeatures = new JsonObject();
+        audioFeatures.addProperty("id", trackId);
+        audioFeatures.addProperty("type", "audio_features");
+        audioFeatures.addProperty("danceability", seed % 100 / 100f);
+        audioFeatures.addProperty("energy", seed % 97 / 97f);
+        audioFeatures.addProperty("key", seed % 12);
+        audioFeatures.addProperty("loudness", -(seed % 30));
+        audioFeatures.addProperty("mode", seed % 2);
+        audioFeatures.addProperty("speechiness", seed % 89 / 89f);
+        audioFeatures.addProperty("acousticness", seed % 83 / 83f);
+        audioFeatures.addProperty("instrumentalness", seed % 79 / 79f);
+        audioFeatures.addProperty("liveness", seed % 73 / 73f);
+        audioFeatures.addProperty("valence", seed % 71 / 71f);
+        audioFeatures.addProperty("tempo", 60 + seed % 140);
+        audioFeatures.addProperty("duration_ms", 180000 + seed);
+        audioFeatures.addProperty("time_signature", 4);
+        return audioFeatures;
+    }
+
+    private JsonObject artist(final String artistId) {
+        final JsonObject artist = new JsonObject();
+        artist.addProperty("id", artistId);
+        artist.addProperty("name", "artist " + artistId);
+        artist.addProperty("type", "artist");
+        artist.addProperty("popularity", Math.abs(artistId.hashCode() % 100));
+        artist.add("genres", new JsonArray());
+        artist.add("images", images(artistId));
+        return artist;
+    }
+
+    private JsonObject playlistSimplified(final String playlistId) {
+        final JsonObject owner = new JsonObject();
+        owner.addProperty("id", "owner-" + playlistId);
+        owner.addProperty("type", "user");
+        final JsonObject playlist = new JsonObject();
+        playlist.addProperty("id", playlistId);
+        playlist.addProperty("name", "playlist " + playlistId);
+        playlist.addProperty("type", "playlist");
+        playlist.add("owner", owner);
+        playlist.add("images", images(playlistId));
+        return playlist;
+    }
+
+    private static JsonArray artists(final String artistId) {
+        final JsonObject artist = new JsonObject();
+        artist.addProperty("id", artistId);
+        artist.addProperty("name", "artist " + artistId);
+        artist.addProperty("type", "artist");
+        final JsonArray artists = new JsonArray();
+        artists.add(artist);
+        return artists;
+    }
+
+    private static JsonArray images(final String id) {
+        final JsonObject image = new JsonObject();
+        image.addProperty("url", "https://i.scdn.co/image/" + id);
+        image.addProperty("height", 640);
+        image.addProperty("width", 640);
+        final JsonArray images = new JsonArray();
+        images.add(image);
+        return images;
+    }
+
+    private static JsonObject paging(final JsonArray items, final int offset, final int limit, final int total) {
+        final JsonObject paging = new JsonObject();
+        paging.add("items", items);
+        paging.addProperty("offset", offset);
+        paging.addProperty("limit", limit);
+        paging.addProperty("total", total);
+        return paging;
+    }
+
+    private static JsonObject several(final String key, final String ids, final Lookup lookup) {
+        final JsonArray items = new JsonArray();
+        for (final String id : ids == null ? new String[0] : ids.split(",")) {
+            final JsonObject item = lookup.find(id);
+            items.add(item != null ? item : JsonNull.INSTANCE);
+        }
+        final JsonObject result = new JsonObject();
+        result.add(key, items);
+        return result;
+    }
+
+    private boolean isCompilation(final int albumIndex) {
+        return albumIndex % 4 == 3;
+    }
+
+    private static JsonObject error(final int status, final String message) {
+        final JsonObject error = new JsonObject();
+        error.addProperty("status", status);
+        error.addProperty("message", message);
+        final JsonObject body = new JsonObject();
+        body.add("error", error);
+        return body;
+    }
+
+    private static Map<String, String> parseQuery(final String rawQuery) throws UnsupportedEncodingException {
+        final Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (final String parameter : rawQuery.split("&")) {
+            final int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return query;
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final JsonObject body)
+            throws IOException {
+        final byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        JsonObject find(String id);
+    }
+}
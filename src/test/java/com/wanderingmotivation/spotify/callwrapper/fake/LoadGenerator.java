@@ -0,0 +1,204 @@
+package com.wanderingmotivation.spotify.callwrapper.fake;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load generator, sends GET requests at a fixed rate no matter how fast the responses come back
+ * Latency is measured from when a request was due to be sent rather than when a worker got to it, so a backed up
+ * service shows up in the percentiles instead of quietly lowering the offered load.
+ */
+public class LoadGenerator {
+    private final URI baseUri;
+    private final double targetRps;
+    private final int maxInFlight;
+
+    /**
+     * @param baseUri service to send requests to
+     * @param targetRps requests per second to send
+     * @param maxInFlight worker threads, requests due while they are all busy wait for one
+     */
+    public LoadGenerator(final URI baseUri, final double targetRps, final int maxInFlight) {
+        this.baseUri = baseUri;
+        this.targetRps = targetRps;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sends requests for the given paths round robin until the duration is up, then waits for the stragglers
+     * @param paths request paths, each reported separately
+     * @param durationSeconds how long to keep sending
+     * @return throughput and latency percentiles, overall and per path
+     */
+    public Report run(final List<String> paths, final long durationSeconds) throws InterruptedException {
+        final ExecutorService workers = Executors.newFixedThreadPool(maxInFlight);
+        final Map<String, Recorder> recorders = new LinkedHashMap<>();
+        paths.forEach(path -> recorders.put(path, new Recorder()));
+
+        final long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / targetRps);
+        final long startNanos = System.nanoTime();
+        final long endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long dueNanos = startNanos;
+        for (int i = 0; dueNanos < endNanos; i++, dueNanos = startNanos + i * intervalNanos) {
+            LockSupport.parkNanos(dueNanos - System.nanoTime());
+            final String path = paths.get(i % paths.size());
+            final long requestDueNanos = dueNanos;
+            workers.execute(() -> recorders.get(path).record(requestDueNanos, send(path)));
+        }
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.MINUTES);
+        final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        final Map<String, Stats> byPath = new LinkedHashMap<>();
+        final Recorder all = new Recorder();
+        recorders.forEach((path, recorder) -> {
+            byPath.put(path, recorder.stats(elapsedSeconds));
+            all.addAll(recorder);
+        });
+        return new Report(targetRps, all.stats(elapsedSeconds), byPath);
+    }
+
+    private boolean send(final String path) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) baseUri.resolve(path).toURL().openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(120000);
+            final int status = connection.getResponseCode();
+            try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                drain(body);
+            }
+            return status < 400;
+        } catch (final IOException e) {
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static void drain(final InputStream body) throws IOException {
+        if (body == null) {
+            return;
+        }
+        final byte[] buffer = new byte[8192];
+        while (body.read(buffer) != -1) {
+            // responses are only read so the connection can be reused
+        }
+    }
+
+    private static class Recorder {
+        private final List<Long> latenciesNanos = new ArrayList<>();
+        private int errors;
+
+        synchronized void record(final long dueNanos, final boolean success) {
+            latenciesNanos.add(System.nanoTime() - dueNanos);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized void addAll(final Recorder other) {
+            latenciesNanos.addAll(other.latenciesNanos);
+            errors += other.errors;
+        }
+
+        synchronized Stats stats(final double elapsedSeconds) {
+            final long[] sorted = latenciesNanos.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return new Stats(sorted.length, errors, sorted.length / elapsedSeconds,
+                    percentileMillis(sorted, 0.5), percentileMillis(sorted, 0.9), percentileMillis(sorted, 0.99),
+                    percentileMillis(sorted, 1));
+        }
+
+        private static double percentileMillis(final long[] sorted, final double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    public static class Stats {
+        private final int requests;
+        private final int errors;
+        private final double throughput;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        Stats(final int requests, final int errors, final double throughput, final double p50Millis,
+              final double p90Millis, final double p99Millis, final double maxMillis) {
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%6d req %5d err %8.1f req/s   p50 %8.1fms  p90 %8.1fms  p99 %8.1fms  max %8.1fms",
+                    requests, errors, throughput, p50Millis, p90Millis, p99Millis, maxMillis);
+        }
+    }
+
+    public static class Report {
+        private final double targetRps;
+        private final Stats overall;
+        private final Map<String, Stats> byPath;
+
+        Report(final double targetRps, final Stats overall, final Map<String, Stats> byPath) {
+            this.targetRps = targetRps;
+            this.overall = overall;
+            this.byPath = byPath;
+        }
+
+        public Stats getOverall() {
+            return overall;
+        }
+
+        public Map<String, Stats> getByPath() {
+            return byPath;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder report = new StringBuilder(String.format("target %.1f req/s%n", targetRps));
+            byPath.forEach((path, stats) -> report.append(String.format("%-40s %s%n", path, stats)));
+            return report.append(String.format("%-40s %s", "overall", overall)).toString();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.wanderingmotivation.spotify.callwrapper.fake;
+
+import com.wanderingmotivation.spotify.callwrapper.SpotifyCallWrapperApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Boots the whole service against the in process fake Spotify and drives its endpoints at a target rate
+ * Excluded from the normal test run, run it with e.g.
+ * ./gradlew loadTest -Ploadtest.rps=100 -Ploadtest.seconds=60 -Ploadtest.latency-millis=50
+ * Other knobs are loadtest.artists, loadtest.workers, loadtest.throttle-every and loadtest.token-seconds.
+ */
+@Tag("load")
+class ServiceLoadTest {
+    private FakeSpotifyServer fakeSpotify;
+    private ConfigurableApplicationContext application;
+    private URI serviceUri;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fakeSpotify = new FakeSpotifyServer()
+                .withLatency(Long.getLong("loadtest.latency-millis", 30))
+                .withThrottling(Integer.getInteger("loadtest.throttle-every", 0), 1)
+                .withTokenLifetime(Long.getLong("loadtest.token-seconds", 3600));
+        application = SpringApplication.run(SpotifyCallWrapperApplication.class,
+                "--server.port=0",
+                "--spotify.client.id=load-test",
+                "--spotify.client.secret=load-test",
+                "--spotify.api.uri=" + fakeSpotify.getUri(),
+                "--spotify.auth.uri=" + fakeSpotify.getUri(),
+                "--spotify.audio-features.store-file=");
+        final int port = ((EmbeddedWebApplicationContext) application).getEmbeddedServletContainer().getPort();
+        serviceUri = URI.create("http://localhost:" + port);
+    }
+
+    @AfterEach
+    void tearDown() {
+        application.close();
+        fakeSpotify.close();
+    }
+
+    @Test
+    @DisplayName("Service endpoints under load")
+    void endpointsUnderLoad() throws InterruptedException {
+        final int artists = Integer.getInteger("loadtest.artists", 20);
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < artists; i++) {
+            paths.add("/getArtistTracks/load-artist-" + i);
+            paths.add("/getPlaylistTracks/load-playlist-" + i);
+            paths.add("/search/artist?search=load+" + i);
+        }
+
+        final LoadGenerator loadGenerator = new LoadGenerator(serviceUri,
+                Double.parseDouble(System.getProperty("loadtest.rps", "20")),
+                Integer.getInteger("loadtest.workers", 64));
+        final LoadGenerator.Report report = loadGenerator.run(paths, Long.getLong("loadtest.seconds", 30));
+
+        System.out.println(report);
+        System.out.println(String.format("fake spotify: %d requests, %d throttled, %d unauthorized, %d tokens issued",
+                fakeSpotify.getApiRequestCount(), fakeSpotify.getThrottledCount(),
+                fakeSpotify.getUnauthorizedCount(), fakeSpotify.getTokensIssued()));
+        assertEquals(0, report.getOverall().getErrors());
+    }
+}
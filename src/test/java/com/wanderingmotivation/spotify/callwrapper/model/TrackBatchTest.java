@@ -0,0 +1,81 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrackBatchTest {
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void initialize() {
+        objectMapper = new ObjectMapper();
+        objectMapper.setFilterProvider(TrackFields.ALL.toFilterProvider());
+    }
+
+    @Test
+    @DisplayName("Serializes the same JSON as a map of WrappedTracks")
+    void serializesLikeWrappedTracks() throws IOException {
+        final Map<String, WrappedTrack> tracks = new LinkedHashMap<>();
+        // grows past its initial capacity
+        final TrackBatch batch = new TrackBatch(2);
+        for (int i = 0; i < 5; i++) {
+            final WrappedTrack track = buildTrack(i, i % 2 == 0);
+            tracks.put(track.getSpotifyId(), track);
+            batch.add(track);
+        }
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(tracks)),
+                objectMapper.readTree(objectMapper.writeValueAsString(batch)));
+        assertEquals(5, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(tracks.get(batch.getSpotifyId(i)), batch.getTrack(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Serializes only the requested fields")
+    void serializesRequestedFields() throws IOException {
+        final TrackFields fields = TrackFields.parse("name,tempo");
+        final WrappedTrack track = buildTrack(1, true);
+        final TrackBatch batch = new TrackBatch(1);
+        batch.add(track);
+
+        assertEquals(objectMapper.readTree(objectMapper.writer(fields.toFilterProvider()).writeValueAsString(track)),
+                objectMapper.readTree(objectMapper.writeValueAsString(batch.withFields(fields))).get("track-1"));
+    }
+
+    private static WrappedTrack buildTrack(final int i, final boolean withAudioFeatures) {
+        final WrappedTrack track = new WrappedTrack();
+        track.setName("name " + i);
+        track.setSpotifyId("track-" + i);
+        track.setArtistIds(i % 3 == 0 ? Lists.newArrayList("artist-a", "artist-b") : Lists.newArrayList("artist-a"));
+        track.setAlbumId("album-" + i % 2);
+        track.setPopularity(i);
+        track.setTrackNumber(i + 1);
+        if (withAudioFeatures) {
+            track.setDanceability(0.5f);
+            track.setEnergy(0.25f);
+            track.setKey(i);
+            track.setLoudness(-5.5f);
+            track.setMode(1);
+            track.setSpeechiness(0.125f);
+            track.setAcousticness(0.75f);
+            track.setInstrumentalness(0f);
+            track.setLiveness(0.1f);
+            track.setValence(0.9f);
+            track.setTempo(120.5f);
+            track.setDurationMs(200000 + i);
+            track.setTimeSignature(4);
+        }
+        return track;
+    }
+}
@@ -0,0 +1,25 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.wanderingmotivation.spotify.callwrapper.util.InvalidRequestException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackFieldsTest {
+    @Test
+    @DisplayName("Fields in any order parse to the same fields")
+    void fieldsAreSorted() {
+        assertEquals("name,popularity,tempo", TrackFields.parse("tempo, name,popularity,name").toString());
+        assertEquals(TrackFields.parse("name,tempo").toString(), TrackFields.parse("tempo,name").toString());
+        assertTrue(TrackFields.parse(" ").includesAll());
+    }
+
+    @Test
+    @DisplayName("Unknown field names are rejected")
+    void unknownFieldsRejected() {
+        assertThrows(InvalidRequestException.class, () -> TrackFields.parse("name,nmae"));
+    }
+}
@@ -0,0 +1,28 @@
+package com.wanderingmotivation.spotify.callwrapper.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WrappedAlbumTest {
+    @Test
+    @DisplayName("Paging bookkeeping stays out of the album JSON")
+    void bookkeepingNotSerialized() {
+        final WrappedAlbum album = new WrappedAlbum("album", Collections.singletonList("artist"), "album",
+                Collections.emptyList(), "name", 1, Collections.emptyList(), Collections.singletonList("track"),
+                60, "2018", "year", new LinkedHashMap<>());
+
+        final JsonNode json = new ObjectMapper().valueToTree(album);
+
+        assertTrue(json.has("trackIds"));
+        assertFalse(json.has("totalTracks"));
+        assertFalse(json.has("trackArtistIds"));
+    }
+}
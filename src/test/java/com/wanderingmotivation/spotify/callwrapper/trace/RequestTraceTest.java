@@ -0,0 +1,55 @@
+package com.wanderingmotivation.spotify.callwrapper.trace;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestTraceTest {
+    @Test
+    @DisplayName("Counts go to the stage that's current, including on threads the context was handed to")
+    @SuppressWarnings("unchecked")
+    void countsByStage() throws InterruptedException {
+        final RequestTrace trace = new RequestTrace();
+
+        try (RequestTrace.Scope ignored = RequestTrace.enter(trace.context())) {
+            try (RequestTrace.Scope stage = RequestTrace.stage("albums")) {
+                RequestTrace.countCall();
+                RequestTrace.countRetry();
+                RequestTrace.countCall();
+            }
+            try (RequestTrace.Scope stage = RequestTrace.stage("tracks")) {
+                RequestTrace.countCacheHits(5);
+                final RequestTrace.Context handedOff = RequestTrace.capture();
+                final Thread worker = new Thread(() -> {
+                    try (RequestTrace.Scope workerScope = RequestTrace.enter(handedOff)) {
+                        RequestTrace.countCall();
+                    }
+                });
+                worker.start();
+                worker.join();
+            }
+        }
+        assertNull(RequestTrace.capture());
+        // nothing is counted without a current trace
+        RequestTrace.countCall();
+
+        final Map<String, Object> stages = (Map<String, Object>) trace.toMap().get("stages");
+        final Map<String, Object> albums = (Map<String, Object>) stages.get("albums");
+        final Map<String, Object> tracks = (Map<String, Object>) stages.get("tracks");
+        assertEquals(2, albums.get("calls"));
+        assertEquals(1, albums.get("retries"));
+        assertEquals(1, tracks.get("calls"));
+        assertEquals(5, tracks.get("cacheHits"));
+
+        final String serverTiming = trace.toServerTiming();
+        assertTrue(serverTiming.startsWith("albums;dur="), serverTiming);
+        assertTrue(serverTiming.contains("desc=\"calls=2 retries=1 cache-hits=0\""), serverTiming);
+        assertTrue(serverTiming.contains(", tracks;dur="), serverTiming);
+        assertTrue(serverTiming.contains(", total;dur="), serverTiming);
+    }
+}